@@ -30,7 +30,38 @@ java {
 }
 
 tasks.test {
-    useJUnitPlatform()
+    useJUnitPlatform {
+        excludeTags("load", "allocation")
+    }
+}
+
+val loadTest by tasks.registering(Test::class) {
+    description = "Runs the load tests against a local fake Kubernetes API server."
+    group = LifecycleBasePlugin.VERIFICATION_GROUP
+
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = sourceSets.test.get().runtimeClasspath
+
+    useJUnitPlatform {
+        includeTags("load")
+    }
+    testLogging.showStandardStreams = true
+}
+
+val allocationTest by tasks.registering(Test::class) {
+    description = "Checks the memory allocated by config reloads against the budgets in allocation-budgets.properties."
+    group = LifecycleBasePlugin.VERIFICATION_GROUP
+
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = sourceSets.test.get().runtimeClasspath
+
+    useJUnitPlatform {
+        includeTags("allocation")
+    }
+    // Run alone, so that nothing else allocates on the threads being measured or triggers GCs
+    maxParallelForks = 1
+    mustRunAfter(tasks.test)
+    testLogging.showStandardStreams = true
 }
 
 publishing {
@@ -19,20 +19,44 @@ import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 public abstract class ConfigCollection<T extends Config> implements ConfigProvider<T> {
     private static final Logger LOGGER = LoggerFactory.getLogger(ConfigCollection.class);
 
+    public static final int DEFAULT_HISTORY_GENERATIONS = 64;
+    public static final int MAX_PINNED_GENERATIONS = 4096;
+
     private final @NotNull ConfigParser<T> parser;
     private final @NotNull ConfigWatcher watcher;
 
-    private final Map<String, T> configs = new HashMap<>();
+    // Read by consumers on their own threads while the watcher applies updates
+    private final Map<String, T> configs = new ConcurrentHashMap<>();
     private final Map<String, String> fileNameToId = new HashMap<>();
+    // The contents each config was parsed from, so that a modified config can be parsed incrementally
+    private final Map<String, FileContents> fileContents = new HashMap<>();
+
+    // Handles are never reused, so a handle always refers to the same config ID
+    private final Map<String, Integer> handles = new ConcurrentHashMap<>();
+    private int nextHandle = 0;
 
-    private final Map<String, List<Consumer<ConfigUpdate>>> updateListeners = Collections.synchronizedMap(new HashMap<>());
-    private final List<Consumer<ConfigUpdate>> globalListeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong generation = new AtomicLong(0);
+    // Held while changing the configs and the generation, so that views can copy the configs at a single generation
+    private final Object snapshotLock = new Object();
+    private final ConfigHistory<T> history = new ConfigHistory<>(DEFAULT_HISTORY_GENERATIONS, MAX_PINNED_GENERATIONS);
+
+    private final Map<String, List<RegisteredListener>> updateListeners = Collections.synchronizedMap(new HashMap<>());
+    private final List<RegisteredListener> globalListeners = new CopyOnWriteArrayList<>();
+    private final ConfigUpdatePublisher publisher = new ConfigUpdatePublisher();
+    private final List<DerivedView<?>> views = new CopyOnWriteArrayList<>();
 
     protected ConfigCollection(@NotNull ConfigParser<T> parser, @NotNull ApiClient client, @NotNull String namespace,
                                @NotNull String configMapName) {
@@ -45,29 +69,114 @@ public abstract class ConfigCollection<T extends Config> implements ConfigProvid
         this.watcher = new FileSystemConfigWatcher(localPath, new ConfigUpdateConsumer());
     }
 
+    protected ConfigCollection(@NotNull ConfigParser<T> parser, @NotNull Collection<Path> localPaths, boolean recursive) throws IOException {
+        this.parser = parser;
+        this.watcher = new FileSystemConfigWatcher(localPaths, recursive, new ConfigUpdateConsumer());
+    }
+
+    protected ConfigCollection(@NotNull ConfigParser<T> parser, @NotNull ConfigWatcher.Factory watcherFactory) throws IOException {
+        this.parser = parser;
+        this.watcher = watcherFactory.create(new ConfigUpdateConsumer());
+    }
+
     @Override
     public @Nullable T getConfig(@NotNull String id) {
         return this.configs.get(id);
     }
 
+    @Override
+    public @Nullable T getConfig(@NotNull String id, long generation) {
+        return this.history.getConfig(id, generation);
+    }
+
+    /**
+     * Gets the handle of a config, a small integer that is assigned when a config is first loaded and never changes,
+     * even if the config is deleted and created again. Handles can be used to index arrays of per-config data.
+     *
+     * @return the handle of the config, or -1 if no config with the ID has ever been loaded
+     */
+    public int handle(@NotNull String id) {
+        Integer handle = this.handles.get(id);
+        return handle != null ? handle : -1;
+    }
+
+    @Override
+    public long generation() {
+        return this.generation.get();
+    }
+
+    @Override
+    public @NotNull ConfigHistory.Pin pinGeneration(long generation) {
+        return this.history.pin(generation);
+    }
+
     @Override
     public @NotNull Collection<T> allConfigs() {
         return Collections.unmodifiableCollection(this.configs.values());
     }
 
     @Override
-    public void addUpdateListener(@NotNull String id, @NotNull Consumer<ConfigUpdate> listener) {
-        this.updateListeners.computeIfAbsent(id, k -> new CopyOnWriteArrayList<>()).add(listener);
+    public @NotNull ListenerRegistration addUpdateListener(@NotNull String id, @NotNull Consumer<ConfigUpdate> listener) {
+        // Added inside compute, so that it can't be added to a list that the last unregister is removing
+        RegisteredListener registered = new RegisteredListener(listener);
+        this.updateListeners.compute(id, (k, listeners) -> {
+            if (listeners == null) listeners = new CopyOnWriteArrayList<>();
+            listeners.add(registered);
+            return listeners;
+        });
+        return () -> this.updateListeners.computeIfPresent(id, (k, listeners) -> {
+            listeners.remove(registered);
+            return listeners.isEmpty() ? null : listeners;
+        });
+    }
+
+    @Override
+    public @NotNull ListenerRegistration addGlobalUpdateListener(@NotNull Consumer<ConfigUpdate> listener) {
+        RegisteredListener registered = new RegisteredListener(listener);
+        this.globalListeners.add(registered);
+        return () -> this.globalListeners.remove(registered);
+    }
+
+    @Override
+    public @NotNull Flow.Publisher<ConfigUpdate> updates(@NotNull String id) {
+        return this.publisher.forId(id);
+    }
+
+    @Override
+    public @NotNull Flow.Publisher<ConfigUpdate> updates() {
+        return this.publisher.global();
     }
 
     @Override
-    public void addGlobalUpdateListener(@NotNull Consumer<ConfigUpdate> listener) {
-        this.globalListeners.add(listener);
+    public <V> @NotNull DerivedView<V> registerView(@NotNull Function<Collection<T>, V> function, @NotNull Predicate<String> dependsOn) {
+        return this.registerGenerationalView((configs, generation) -> function.apply(configs), dependsOn);
+    }
+
+    /**
+     * Registers a view whose value is computed from all configs and the generation they are at, for values that
+     * record their generation.
+     *
+     * @see #registerView(Function, Predicate)
+     */
+    protected <V> @NotNull DerivedView<V> registerGenerationalView(@NotNull BiFunction<Collection<T>, Long, V> function,
+                                                                   @NotNull Predicate<String> dependsOn) {
+        DerivedView<V> view = new DerivedView<>(() -> {
+            List<T> configs;
+            long generation;
+            synchronized (this.snapshotLock) {
+                configs = List.copyOf(this.configs.values());
+                generation = this.generation.get();
+            }
+            return new DerivedView.Snapshot<>(function.apply(configs, generation), generation);
+        }, dependsOn, this.views);
+        this.views.add(view);
+        return view;
     }
 
     @Override
     public void close() throws IOException {
         this.watcher.close();
+        this.publisher.close();
     }
 
     private final class ConfigUpdateConsumer implements ConfigWatcherConsumer {
@@ -75,21 +184,23 @@ public abstract class ConfigCollection<T extends Config> implements ConfigProvid
         @Override
         public void onConfigCreate(@NotNull String fileName, @NotNull String fileContents) {
             T config = this.parseConfig(fileName, fileContents);
-            this.addOrReplaceConfig(fileName, config);
-            this.propagateUpdate(config.id(), new ConfigUpdate.Create<>(config));
+            this.addOrReplaceConfig(fileName, new FileContents(fileContents, null), config);
+            this.propagateUpdate(config.id(), config, new ConfigUpdate.Create<>(config));
         }
 
         @Override
         public void onConfigModify(@NotNull String fileName, @NotNull String fileContents) {
-            T newConfig = this.parseConfig(fileName, fileContents);
+            Object index = ConfigCollection.this.parser.index(fileContents);
+            T newConfig = this.parseModifiedConfig(fileName, fileContents, index);
             T oldConfig = ConfigCollection.this.getConfig(newConfig.id());
-            this.addOrReplaceConfig(fileName, newConfig);
-            this.propagateUpdate(newConfig.id(), new ConfigUpdate.Modify<>(oldConfig, newConfig));
+            this.addOrReplaceConfig(fileName, new FileContents(fileContents, index), newConfig);
+            this.propagateUpdate(newConfig.id(), newConfig, new ConfigUpdate.Modify<>(oldConfig, newConfig));
         }
 
-        private void addOrReplaceConfig(@NotNull String fileName, @NotNull T config) {
+        private void addOrReplaceConfig(@NotNull String fileName, @NotNull FileContents fileContents, @NotNull T config) {
             ConfigCollection.this.fileNameToId.put(fileName, config.id());
-            ConfigCollection.this.configs.put(config.id(), config);
+            ConfigCollection.this.fileContents.put(fileName, fileContents);
+            ConfigCollection.this.handles.computeIfAbsent(config.id(), id -> ConfigCollection.this.nextHandle++);
         }
 
         private @NotNull T parseConfig(@NotNull String fileName, @NotNull String fileContents) {
@@ -101,24 +212,92 @@ public abstract class ConfigCollection<T extends Config> implements ConfigProvid
             }
         }
 
+        private @NotNull T parseModifiedConfig(@NotNull String fileName, @NotNull String fileContents, @Nullable Object index) {
+            String previousId = ConfigCollection.this.fileNameToId.get(fileName);
+            T previousConfig = previousId != null ? ConfigCollection.this.configs.get(previousId) : null;
+            FileContents previous = ConfigCollection.this.fileContents.get(fileName);
+            if (previousConfig == null || previous == null) return this.parseConfig(fileName, fileContents);
+
+            try {
+                return ConfigCollection.this.parser.parse(fileContents, index, previousConfig, previous.contents(), previous.index());
+            } catch (ConfigParseException exception) {
+                LOGGER.error("Failed to parse config '{}'", fileName, exception);
+                throw new RuntimeException(exception);
+            }
+        }
+
         @Override
         public void onConfigDelete(@NotNull String fileName) {
-            String id = ConfigCollection.this.fileNameToId.get(fileName);
-            T oldConfig = ConfigCollection.this.configs.remove(id);
-            this.propagateUpdate(id, new ConfigUpdate.Delete<>(oldConfig));
+            ConfigCollection.this.fileContents.remove(fileName);
+            String id = ConfigCollection.this.fileNameToId.remove(fileName);
+            if (id == null) {
+                LOGGER.warn("Deleted config '{}' was never loaded", fileName);
+                return;
+            }
+
+            T oldConfig = ConfigCollection.this.configs.get(id);
+            this.propagateUpdate(id, null, new ConfigUpdate.Delete<>(oldConfig));
         }
 
-        private void propagateUpdate(@NotNull String id, @NotNull ConfigUpdate update) {
-            for (Consumer<ConfigUpdate> listener : ConfigCollection.this.globalListeners) {
-                listener.accept(update);
+        /**
+         * @param config the new config, or null if it was deleted
+         */
+        private void propagateUpdate(@NotNull String id, @Nullable T config, @NotNull ConfigUpdate update) {
+            synchronized (ConfigCollection.this.snapshotLock) {
+                if (config != null) {
+                    ConfigCollection.this.configs.put(id, config);
+                } else {
+                    ConfigCollection.this.configs.remove(id);
+                }
+
+                // Record the history before publishing the generation, so that it can always be looked up
+                long generation = ConfigCollection.this.generation.get() + 1;
+                ConfigCollection.this.history.record(generation, id, config);
+                ConfigCollection.this.generation.set(generation);
             }
 
-            List<Consumer<ConfigUpdate>> listeners = ConfigCollection.this.updateListeners.get(id);
+            // Invalidate views before notifying listeners, so that listeners see the new values. A modify that
+            // parses to an equal config, e.g. a formatting change, can't change any view.
+            if (!(update instanceof ConfigUpdate.Modify<?> modify) || !Objects.equals(modify.oldConfig(), modify.newConfig())) {
+                for (DerivedView<?> view : ConfigCollection.this.views) {
+                    view.onConfigChanged(id);
+                }
+            }
+
+            for (RegisteredListener listener : ConfigCollection.this.globalListeners) {
+                listener.listener().accept(update);
+            }
+
+            List<RegisteredListener> listeners = ConfigCollection.this.updateListeners.get(id);
             if (listeners != null) {
-                for (Consumer<ConfigUpdate> listener : listeners) {
-                    listener.accept(update);
+                for (RegisteredListener listener : listeners) {
+                    listener.listener().accept(update);
                 }
             }
+
+            ConfigCollection.this.publisher.publish(id, update);
+        }
+    }
+
+    /**
+     * The contents a config was parsed from, with the parser's index of them if it made one.
+     */
+    private record FileContents(@NotNull String contents, @Nullable Object index) {
+    }
+
+    /**
+     * A single registration of a listener. Registrations are compared by identity, so unregistering only removes
+     * the listener added by that registration, even if the same listener was registered more than once.
+     */
+    private static final class RegisteredListener {
+        private final @NotNull Consumer<ConfigUpdate> listener;
+
+        RegisteredListener(@NotNull Consumer<ConfigUpdate> listener) {
+            this.listener = listener;
+        }
+
+        @NotNull Consumer<ConfigUpdate> listener() {
+            return this.listener;
         }
     }
 }
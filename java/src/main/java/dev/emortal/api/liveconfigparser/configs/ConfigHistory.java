@@ -0,0 +1,201 @@
+package dev.emortal.api.liveconfigparser.configs;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A bounded history of the recent generations of a {@link ConfigCollection}.
+ * <p>
+ * Every update applied to a collection creates a new generation. Rather than copying every config for every
+ * generation, only the changed config is recorded, so memory use is bounded by the number of retained generations
+ * plus the number of live configs.
+ * <p>
+ * Generations older than the retention window are evicted, unless they are {@link #pin(long) pinned}. A pin only
+ * holds its generation for a limited number of generations, so a pin that is never closed can't keep every later
+ * version alive.
+ */
+public final class ConfigHistory<T extends Config> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConfigHistory.class);
+
+    private final int maxGenerations;
+    private final int maxPinnedGenerations;
+
+    // Each deque holds the versions of a single config, oldest first. A null config marks a deletion.
+    private final Map<String, ArrayDeque<Version<T>>> versions = new HashMap<>();
+    // Pinned generation -> pin count
+    private final TreeMap<Long, Integer> pins = new TreeMap<>();
+
+    private long latestGeneration = 0;
+    private long oldestGeneration = 0;
+
+    /**
+     * @param maxGenerations the number of generations retained without pins
+     * @param maxPinnedGenerations the number of generations a pin can hold its generation for, after which the
+     *                             generation is evicted anyway
+     */
+    ConfigHistory(int maxGenerations, int maxPinnedGenerations) {
+        if (maxGenerations < 1) throw new IllegalArgumentException("maxGenerations must be at least 1");
+        if (maxPinnedGenerations < maxGenerations) {
+            throw new IllegalArgumentException("maxPinnedGenerations must be at least maxGenerations");
+        }
+        this.maxGenerations = maxGenerations;
+        this.maxPinnedGenerations = maxPinnedGenerations;
+    }
+
+    synchronized void record(long generation, @NotNull String id, @Nullable T config) {
+        if (generation <= this.latestGeneration) {
+            throw new IllegalArgumentException("Generation %s is not newer than %s".formatted(generation, this.latestGeneration));
+        }
+        this.latestGeneration = generation;
+
+        this.versions.computeIfAbsent(id, k -> new ArrayDeque<>()).addLast(new Version<>(generation, config));
+        this.evict();
+    }
+
+    /**
+     * @param id the ID of the config
+     * @param generation the generation to look up
+     * @return the config as it was at the given generation, or null if it did not exist at that generation
+     * @throws IllegalArgumentException if the generation has been evicted or has not happened yet
+     */
+    public synchronized @Nullable T getConfig(@NotNull String id, long generation) {
+        this.checkRetained(generation);
+
+        ArrayDeque<Version<T>> configVersions = this.versions.get(id);
+        if (configVersions == null) return null;
+
+        // Versions are ordered oldest first, so walk backwards to find the newest version at or before the generation
+        Iterator<Version<T>> iterator = configVersions.descendingIterator();
+        while (iterator.hasNext()) {
+            Version<T> version = iterator.next();
+            if (version.generation() <= generation) return version.config();
+        }
+        return null;
+    }
+
+    /**
+     * Pins the given generation, preventing it from being evicted until the returned pin is closed, or until it is
+     * more than the maximum number of pinned generations old.
+     * <p>
+     * Retention is counted in generations, not bytes: while a generation is pinned, every version of every config
+     * recorded since is kept, however large the configs are.
+     *
+     * @param generation the generation to pin
+     * @return the pin, which must be closed once the generation is no longer needed
+     * @throws IllegalArgumentException if the generation has been evicted or has not happened yet
+     */
+    public synchronized @NotNull Pin pin(long generation) {
+        this.checkRetained(generation);
+
+        this.pins.merge(generation, 1, Integer::sum);
+        return new Pin(this, generation);
+    }
+
+    public synchronized long latestGeneration() {
+        return this.latestGeneration;
+    }
+
+    public synchronized long oldestGeneration() {
+        return this.oldestGeneration;
+    }
+
+    public synchronized boolean isRetained(long generation) {
+        return generation >= this.oldestGeneration && generation <= this.latestGeneration;
+    }
+
+    private void checkRetained(long generation) {
+        if (generation > this.latestGeneration) {
+            throw new IllegalArgumentException("Generation %s has not happened yet (latest is %s)".formatted(generation, this.latestGeneration));
+        }
+        if (generation < this.oldestGeneration) {
+            throw new IllegalArgumentException("Generation %s has been evicted (oldest is %s)".formatted(generation, this.oldestGeneration));
+        }
+    }
+
+    private synchronized void unpin(long generation) {
+        this.pins.computeIfPresent(generation, (k, count) -> count == 1 ? null : count - 1);
+        this.evict();
+    }
+
+    private void evict() {
+        long oldest = Math.max(0, this.latestGeneration - this.maxGenerations + 1);
+
+        long oldestPinnable = Math.max(0, this.latestGeneration - this.maxPinnedGenerations + 1);
+        if (!this.pins.isEmpty() && this.pins.firstKey() < oldestPinnable) {
+            Map<Long, Integer> expired = this.pins.headMap(oldestPinnable);
+            LOGGER.warn("Evicting pinned generations {} as they are more than {} generations old, was a pin not closed?",
+                    expired.keySet(), this.maxPinnedGenerations);
+            expired.clear();
+        }
+        if (!this.pins.isEmpty()) oldest = Math.min(oldest, this.pins.firstKey());
+        if (oldest <= this.oldestGeneration) return;
+
+        this.oldestGeneration = oldest;
+
+        Iterator<ArrayDeque<Version<T>>> iterator = this.versions.values().iterator();
+        while (iterator.hasNext()) {
+            ArrayDeque<Version<T>> configVersions = iterator.next();
+
+            // The oldest version is only needed while nothing newer covers the oldest retained generation
+            while (configVersions.size() > 1 && secondOldest(configVersions).generation() <= oldest) {
+                configVersions.removeFirst();
+            }
+
+            Version<T> first = configVersions.getFirst();
+            if (configVersions.size() == 1 && first.config() == null && first.generation() <= oldest) {
+                // Deleted before every retained generation, so nothing can look it up any more
+                iterator.remove();
+            }
+        }
+    }
+
+    private static <T extends Config> @NotNull Version<T> secondOldest(@NotNull ArrayDeque<Version<T>> configVersions) {
+        Iterator<Version<T>> iterator = configVersions.iterator();
+        iterator.next();
+        return iterator.next();
+    }
+
+    private record Version<T extends Config>(long generation, @Nullable T config) {
+    }
+
+    public static final class Pin implements AutoCloseable {
+
+        private final @NotNull ConfigHistory<?> history;
+        private final long generation;
+        private boolean closed;
+
+        private Pin(@NotNull ConfigHistory<?> history, long generation) {
+            this.history = history;
+            this.generation = generation;
+        }
+
+        public long generation() {
+            return this.generation;
+        }
+
+        /**
+         * @return true if the generation was evicted anyway, as it was pinned for too long, so it can no longer be
+         * looked up
+         */
+        public boolean isExpired() {
+            return !this.history.isRetained(this.generation);
+        }
+
+        @Override
+        public void close() {
+            synchronized (this.history) {
+                if (this.closed) return;
+                this.closed = true;
+            }
+            this.history.unpin(this.generation);
+        }
+    }
+}
@@ -5,17 +5,77 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.concurrent.Flow;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 public interface ConfigProvider<T extends Config> extends AutoCloseable {
 
     @Nullable T getConfig(@NotNull String id);
 
-    void addUpdateListener(@NotNull String id, @NotNull Consumer<ConfigUpdate> listener);
+    /**
+     * @return the config as it was at the given generation, or null if it did not exist at that generation
+     * @throws IllegalArgumentException if the generation is no longer retained in the history
+     */
+    @Nullable T getConfig(@NotNull String id, long generation);
+
+    /**
+     * @return the current generation, which is incremented for every config update
+     */
+    long generation();
+
+    /**
+     * Pins a generation so that it is kept in the history, for example for the duration of a match.
+     * <p>
+     * While a generation is pinned, every version of every config recorded since is kept, for up to
+     * {@link ConfigCollection#MAX_PINNED_GENERATIONS} updates, with no limit on their total size. After that, the
+     * generation is evicted anyway, a warning is logged and {@link ConfigHistory.Pin#isExpired()} returns true. So
+     * pins should be held for as short a time as possible, and always closed.
+     *
+     * @return the pin, which must be closed once the generation is no longer needed
+     * @throws IllegalArgumentException if the generation is no longer retained in the history
+     */
+    @NotNull ConfigHistory.Pin pinGeneration(long generation);
+
+    @NotNull ListenerRegistration addUpdateListener(@NotNull String id, @NotNull Consumer<ConfigUpdate> listener);
 
     @NotNull Collection<T> allConfigs();
 
-    void addGlobalUpdateListener(@NotNull Consumer<ConfigUpdate> listener);
+    @NotNull ListenerRegistration addGlobalUpdateListener(@NotNull Consumer<ConfigUpdate> listener);
+
+    /**
+     * Updates are delivered asynchronously, and each subscriber has a bounded buffer. If a subscriber does not
+     * request updates fast enough, updates are dropped for that subscriber rather than holding up other subscribers.
+     *
+     * @return a publisher of updates to the config with the given ID
+     */
+    @NotNull Flow.Publisher<ConfigUpdate> updates(@NotNull String id);
+
+    /**
+     * @return a publisher of updates to all configs
+     * @see #updates(String)
+     */
+    @NotNull Flow.Publisher<ConfigUpdate> updates();
+
+    /**
+     * Registers a value derived from all configs, which is computed lazily and only recomputed after a config it
+     * depends on changes. The view should be closed once it is no longer needed.
+     *
+     * @param function computes the value from a copy of all configs at a single generation. It may be called from any
+     *                 thread that gets the value.
+     * @param dependsOn whether the value depends on the config with the given ID
+     */
+    <V> @NotNull DerivedView<V> registerView(@NotNull Function<Collection<T>, V> function, @NotNull Predicate<String> dependsOn);
+
+    /**
+     * Registers a value derived from all configs, which is recomputed after any config changes.
+     *
+     * @see #registerView(Function, Predicate)
+     */
+    default <V> @NotNull DerivedView<V> registerView(@NotNull Function<Collection<T>, V> function) {
+        return this.registerView(function, id -> true);
+    }
 
     @Override
     void close() throws IOException;
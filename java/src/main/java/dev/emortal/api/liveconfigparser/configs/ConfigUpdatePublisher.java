@@ -0,0 +1,163 @@
+package dev.emortal.api.liveconfigparser.configs;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+
+/**
+ * Publishes config updates to {@link Flow.Subscriber}s, both for all configs and for individual config IDs.
+ * <p>
+ * Each subscriber gets its own bounded buffer. Updates are never blocked on slow subscribers, instead they are
+ * dropped for that subscriber once its buffer is full, so a stalled consumer cannot hold up the watcher.
+ * <p>
+ * Per-ID publishers only exist while they have subscribers, and are removed when their last subscriber cancels, so
+ * publishers for configs that are never updated again are not kept around.
+ */
+final class ConfigUpdatePublisher implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConfigUpdatePublisher.class);
+
+    private final @NotNull Executor executor;
+    private final int bufferCapacity;
+
+    private final SubmissionPublisher<ConfigUpdate> globalPublisher;
+    // Publishers are only added and removed while holding this publisher's lock, so that a subscriber is never added
+    // to a publisher that has just been removed. Updates are offered without the lock.
+    private final Map<String, SubmissionPublisher<ConfigUpdate>> publishers = new ConcurrentHashMap<>();
+    private boolean closed;
+
+    ConfigUpdatePublisher() {
+        this(ForkJoinPool.commonPool(), Flow.defaultBufferSize());
+    }
+
+    ConfigUpdatePublisher(@NotNull Executor executor, int bufferCapacity) {
+        this.executor = executor;
+        this.bufferCapacity = bufferCapacity;
+        this.globalPublisher = new SubmissionPublisher<>(executor, bufferCapacity);
+    }
+
+    @NotNull Flow.Publisher<ConfigUpdate> global() {
+        return this.globalPublisher;
+    }
+
+    /**
+     * @throws IllegalStateException if this publisher has been closed
+     */
+    @NotNull Flow.Publisher<ConfigUpdate> forId(@NotNull String id) {
+        synchronized (this) {
+            if (this.closed) throw new IllegalStateException("Config update publisher is closed");
+        }
+
+        // The publisher is looked up on subscribe, as it may have been removed since this was called
+        return subscriber -> {
+            synchronized (this) {
+                if (this.closed) throw new IllegalStateException("Config update publisher is closed");
+
+                SubmissionPublisher<ConfigUpdate> publisher = this.publishers.computeIfAbsent(id,
+                        key -> new SubmissionPublisher<>(this.executor, this.bufferCapacity));
+                publisher.subscribe(new RemovingSubscriber(id, publisher, subscriber));
+            }
+        };
+    }
+
+    void publish(@NotNull String id, @NotNull ConfigUpdate update) {
+        if (this.globalPublisher.hasSubscribers()) {
+            this.globalPublisher.offer(update, this::onDrop);
+        }
+
+        SubmissionPublisher<ConfigUpdate> publisher = this.publishers.get(id);
+        if (publisher == null) return;
+
+        // Subscribers that completed rather than cancelled are only noticed here
+        if (publisher.hasSubscribers()) {
+            publisher.offer(update, this::onDrop);
+        } else {
+            this.removeIfUnused(id, publisher);
+        }
+    }
+
+    /**
+     * @return the number of IDs that currently have a publisher
+     */
+    int idPublisherCount() {
+        return this.publishers.size();
+    }
+
+    private synchronized void removeIfUnused(@NotNull String id, @NotNull SubmissionPublisher<ConfigUpdate> publisher) {
+        // Not closed, as it has no subscribers to complete, and an update may still be being offered to it
+        if (!publisher.hasSubscribers()) this.publishers.remove(id, publisher);
+    }
+
+    private boolean onDrop(@NotNull Flow.Subscriber<? super ConfigUpdate> subscriber, @NotNull ConfigUpdate update) {
+        // Only the ID is logged, as the update holds whole configs
+        Config config = update.newConfig() != null ? update.newConfig() : update.oldConfig();
+        LOGGER.warn("Dropped update to config '{}' for slow subscriber {}", config != null ? config.id() : null, subscriber);
+        return false; // Don't retry, the subscriber's buffer is full
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            this.closed = true;
+        }
+
+        this.globalPublisher.close();
+        for (SubmissionPublisher<ConfigUpdate> publisher : this.publishers.values()) {
+            publisher.close();
+        }
+        this.publishers.clear();
+    }
+
+    /**
+     * Forwards to a subscriber of a per-ID publisher, removing the publisher once its last subscriber cancels.
+     */
+    private final class RemovingSubscriber implements Flow.Subscriber<ConfigUpdate> {
+        private final @NotNull String id;
+        private final @NotNull SubmissionPublisher<ConfigUpdate> publisher;
+        private final @NotNull Flow.Subscriber<? super ConfigUpdate> subscriber;
+
+        RemovingSubscriber(@NotNull String id, @NotNull SubmissionPublisher<ConfigUpdate> publisher,
+                           @NotNull Flow.Subscriber<? super ConfigUpdate> subscriber) {
+            this.id = id;
+            this.publisher = publisher;
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void onSubscribe(@NotNull Flow.Subscription subscription) {
+            this.subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    subscription.request(n);
+                }
+
+                @Override
+                public void cancel() {
+                    subscription.cancel();
+                    ConfigUpdatePublisher.this.removeIfUnused(RemovingSubscriber.this.id, RemovingSubscriber.this.publisher);
+                }
+            });
+        }
+
+        @Override
+        public void onNext(@NotNull ConfigUpdate item) {
+            this.subscriber.onNext(item);
+        }
+
+        @Override
+        public void onError(@NotNull Throwable throwable) {
+            this.subscriber.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            this.subscriber.onComplete();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package dev.emortal.api.liveconfigparser.configs;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * A value derived from the configs of a {@link ConfigProvider}, such as a sorted list of configs.
+ * <p>
+ * The value is computed on the first {@link #get()} after a config it depends on changes, and is then shared by
+ * every caller until the next such change. Values should be immutable, as they are shared between threads.
+ * <p>
+ * Each value is computed from a copy of the configs taken at a single generation, so it never mixes configs from
+ * different generations.
+ *
+ * @see ConfigProvider#registerView(java.util.function.Function, Predicate)
+ */
+public final class DerivedView<V> implements AutoCloseable {
+
+    private final @NotNull Supplier<Snapshot<V>> function;
+    private final @NotNull Predicate<String> dependsOn;
+    private final @NotNull Collection<DerivedView<?>> registry;
+
+    // Set when a config the view depends on changes, and cleared before recomputing, so that a change made while
+    // recomputing is never lost
+    private final AtomicBoolean dirty = new AtomicBoolean(true);
+    private volatile Snapshot<V> snapshot;
+
+    /**
+     * @param function computes the value from a copy of the configs, along with the generation of that copy
+     */
+    DerivedView(@NotNull Supplier<Snapshot<V>> function, @NotNull Predicate<String> dependsOn,
+                @NotNull Collection<DerivedView<?>> registry) {
+        this.function = function;
+        this.dependsOn = dependsOn;
+        this.registry = registry;
+    }
+
+    /**
+     * @return the current value, computing it if a config the view depends on has changed since it was last computed
+     */
+    public V get() {
+        return this.snapshot().value();
+    }
+
+    /**
+     * The value may be recomputed between calls, so use {@link #snapshot()} if the value is needed too.
+     *
+     * @return the generation the current value was computed at
+     */
+    public long generation() {
+        return this.snapshot().generation();
+    }
+
+    /**
+     * @return the current value together with the generation it was computed at
+     */
+    public @NotNull Snapshot<V> snapshot() {
+        Snapshot<V> snapshot = this.snapshot;
+        if (snapshot != null && !this.dirty.get()) return snapshot;
+
+        synchronized (this) {
+            // Another thread may have recomputed while we were waiting
+            snapshot = this.snapshot;
+            if (snapshot != null && !this.dirty.get()) return snapshot;
+
+            this.dirty.set(false);
+            snapshot = this.function.get();
+            this.snapshot = snapshot;
+            return snapshot;
+        }
+    }
+
+    void onConfigChanged(@NotNull String id) {
+        if (this.dependsOn.test(id)) this.dirty.set(true);
+    }
+
+    /**
+     * Stops the view being told about config changes, after which its value may be out of date.
+     */
+    @Override
+    public void close() {
+        this.registry.remove(this);
+    }
+
+    /**
+     * A value of the view, and the generation of the configs it was computed from.
+     */
+    public record Snapshot<V>(V value, long generation) {
+    }
+}
@@ -0,0 +1,13 @@
+package dev.emortal.api.liveconfigparser.configs;
+
+/**
+ * A handle to a registered update listener, used to remove the listener once it is no longer needed.
+ */
+@FunctionalInterface
+public interface ListenerRegistration {
+
+    /**
+     * Removes the listener. Calling this more than once has no effect.
+     */
+    void unregister();
+}
@@ -1,7 +1,6 @@
 package dev.emortal.api.liveconfigparser.configs;
 
 import dev.emortal.api.liveconfigparser.configs.gamemode.GameModeCollection;
-import dev.emortal.api.liveconfigparser.configs.gamemode.GameModeConfig;
 import io.kubernetes.client.openapi.ApiClient;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -28,13 +27,13 @@ public final class LiveConfigCollection implements AutoCloseable {
         return new LiveConfigCollection(collection);
     }
 
-    private final @Nullable ConfigProvider<GameModeConfig> gameModeCollection;
+    private final @Nullable GameModeCollection gameModeCollection;
 
     private LiveConfigCollection(@Nullable GameModeCollection collection) {
         this.gameModeCollection = collection;
     }
 
-    public @Nullable ConfigProvider<GameModeConfig> gameModes() {
+    public @Nullable GameModeCollection gameModes() {
         return this.gameModeCollection;
     }
 
@@ -0,0 +1,185 @@
+package dev.emortal.api.liveconfigparser.configs.common;
+
+import com.google.gson.stream.JsonReader;
+import dev.emortal.api.liveconfigparser.parser.FieldTable;
+import dev.emortal.api.liveconfigparser.parser.SchemaReport;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static dev.emortal.api.liveconfigparser.parser.FieldTable.Presence.DEFAULTED;
+import static dev.emortal.api.liveconfigparser.parser.FieldTable.Presence.OPTIONAL;
+import static dev.emortal.api.liveconfigparser.parser.FieldTable.Presence.REQUIRED;
+
+/**
+ * Readers for the records shared between config types, matching the structs in {@code golang/pkg/liveconfig/common.go}.
+ * <p>
+ * Missing fields take the same zero values as they would on the Go side.
+ */
+public final class CommonSchemas {
+
+    private static final int ITEM_MATERIAL = 0;
+    private static final int ITEM_SLOT = 1;
+    private static final int ITEM_NAME = 2;
+    private static final int ITEM_LORE = 3;
+    private static final FieldTable ITEM_FIELDS = FieldTable.builder()
+            .field(ITEM_MATERIAL, "material", REQUIRED)
+            // Left out of hand-written configs when zero, so not reported
+            .field(ITEM_SLOT, "slot", OPTIONAL)
+            .field(ITEM_NAME, "name", DEFAULTED)
+            .field(ITEM_LORE, "lore", OPTIONAL)
+            .build();
+
+    private static final int NPC_ENTITY_TYPE = 0;
+    private static final int NPC_TITLES = 1;
+    private static final int NPC_SKIN = 2;
+    private static final FieldTable NPC_FIELDS = FieldTable.builder()
+            .field(NPC_ENTITY_TYPE, "entityType", REQUIRED)
+            .field(NPC_TITLES, "titles", OPTIONAL)
+            .field(NPC_SKIN, "skin", REQUIRED)
+            .build();
+
+    private static final int SKIN_TEXTURE = 0;
+    private static final int SKIN_SIGNATURE = 1;
+    private static final FieldTable SKIN_FIELDS = FieldTable.builder()
+            .field(SKIN_TEXTURE, "texture", REQUIRED)
+            .field(SKIN_SIGNATURE, "signature", REQUIRED)
+            .build();
+
+    private static final int MAP_ID = 0;
+    private static final int MAP_ENABLED = 1;
+    private static final int MAP_FRIENDLY_NAME = 2;
+    private static final int MAP_PRIORITY = 3;
+    private static final int MAP_DISPLAY_ITEM = 4;
+    private static final FieldTable MAP_FIELDS = FieldTable.builder()
+            .field(MAP_ID, "id", REQUIRED)
+            .field(MAP_ENABLED, "enabled", DEFAULTED)
+            .field(MAP_FRIENDLY_NAME, "friendlyName", DEFAULTED)
+            .field(MAP_PRIORITY, "priority", OPTIONAL)
+            // Optional on the Go side, so left null rather than failing the whole config, but still reported
+            .field(MAP_DISPLAY_ITEM, "displayItem", DEFAULTED)
+            .build();
+
+    /**
+     * @param path the path of the item, prefixed to field names in the report, e.g. {@code displayItem.}
+     */
+    public static @NotNull ConfigItem readItem(@NotNull JsonReader reader, @NotNull String path,
+                                               @NotNull SchemaReport report) throws IOException {
+        String material = null;
+        int slot = 0;
+        String name = "";
+        List<String> lore = List.of();
+
+        long present = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            int field = ITEM_FIELDS.nextField(reader, path, report);
+            if (field == -1) continue;
+
+            present |= 1L << field;
+            switch (field) {
+                case ITEM_MATERIAL -> material = reader.nextString();
+                case ITEM_SLOT -> slot = reader.nextInt();
+                case ITEM_NAME -> name = reader.nextString();
+                case ITEM_LORE -> lore = readStringList(reader);
+            }
+        }
+        reader.endObject();
+        ITEM_FIELDS.checkMissing(present, path, report);
+
+        return new ConfigItem(material, slot, name, lore);
+    }
+
+    public static @NotNull ConfigNPC readNpc(@NotNull JsonReader reader, @NotNull String path,
+                                             @NotNull SchemaReport report) throws IOException {
+        String entityType = null;
+        List<String> titles = List.of();
+        ConfigSkin skin = null;
+
+        long present = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            int field = NPC_FIELDS.nextField(reader, path, report);
+            if (field == -1) continue;
+
+            present |= 1L << field;
+            switch (field) {
+                case NPC_ENTITY_TYPE -> entityType = reader.nextString();
+                case NPC_TITLES -> titles = readStringList(reader);
+                case NPC_SKIN -> skin = readSkin(reader, path + "skin.", report);
+            }
+        }
+        reader.endObject();
+        NPC_FIELDS.checkMissing(present, path, report);
+
+        return new ConfigNPC(entityType, titles, skin);
+    }
+
+    public static @NotNull ConfigSkin readSkin(@NotNull JsonReader reader, @NotNull String path,
+                                               @NotNull SchemaReport report) throws IOException {
+        String texture = null;
+        String signature = null;
+
+        long present = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            int field = SKIN_FIELDS.nextField(reader, path, report);
+            if (field == -1) continue;
+
+            present |= 1L << field;
+            switch (field) {
+                case SKIN_TEXTURE -> texture = reader.nextString();
+                case SKIN_SIGNATURE -> signature = reader.nextString();
+            }
+        }
+        reader.endObject();
+        SKIN_FIELDS.checkMissing(present, path, report);
+
+        return new ConfigSkin(texture, signature);
+    }
+
+    public static @NotNull ConfigMap readMap(@NotNull JsonReader reader, @NotNull String path,
+                                             @NotNull SchemaReport report) throws IOException {
+        String id = null;
+        boolean enabled = false;
+        String friendlyName = "";
+        int priority = 0;
+        ConfigItem displayItem = null;
+
+        long present = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            int field = MAP_FIELDS.nextField(reader, path, report);
+            if (field == -1) continue;
+
+            present |= 1L << field;
+            switch (field) {
+                case MAP_ID -> id = reader.nextString();
+                case MAP_ENABLED -> enabled = reader.nextBoolean();
+                case MAP_FRIENDLY_NAME -> friendlyName = reader.nextString();
+                case MAP_PRIORITY -> priority = reader.nextInt();
+                case MAP_DISPLAY_ITEM -> displayItem = readItem(reader, path + "displayItem.", report);
+            }
+        }
+        reader.endObject();
+        MAP_FIELDS.checkMissing(present, path, report);
+
+        return new ConfigMap(id, enabled, friendlyName, priority, displayItem);
+    }
+
+    private static @NotNull List<String> readStringList(@NotNull JsonReader reader) throws IOException {
+        List<String> list = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            list.add(reader.nextString());
+        }
+        reader.endArray();
+        return Collections.unmodifiableList(list);
+    }
+
+    private CommonSchemas() {
+    }
+}
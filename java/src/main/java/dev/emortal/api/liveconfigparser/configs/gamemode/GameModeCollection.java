@@ -1,19 +1,36 @@
 package dev.emortal.api.liveconfigparser.configs.gamemode;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import dev.emortal.api.liveconfigparser.adapter.DurationAdapter;
-import dev.emortal.api.liveconfigparser.adapter.NullListToEmptyFactory;
 import dev.emortal.api.liveconfigparser.configs.ConfigCollection;
+import dev.emortal.api.liveconfigparser.configs.DerivedView;
+import dev.emortal.api.liveconfigparser.configs.common.ConfigMap;
+import dev.emortal.api.liveconfigparser.parser.ConfigParseException;
 import dev.emortal.api.liveconfigparser.parser.ConfigParser;
+import dev.emortal.api.liveconfigparser.parser.JsonSpans;
+import dev.emortal.api.liveconfigparser.parser.SchemaReport;
+import dev.emortal.api.liveconfigparser.watcher.ConfigWatcher;
+import dev.emortal.api.liveconfigparser.watcher.FanOutFollowerWatcher;
+import dev.emortal.api.liveconfigparser.watcher.FanOutLeaderWatcher;
+import dev.emortal.api.liveconfigparser.watcher.KubernetesConfigWatcher;
 import io.kubernetes.client.openapi.ApiClient;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.nio.file.Path;
-import java.time.Duration;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public final class GameModeCollection extends ConfigCollection<GameModeConfig> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GameModeCollection.class);
+
     public static final Path FILE_SYSTEM_PATH = Path.of("./config/gamemodes");
 
     private static final String NAMESPACE = System.getenv("NAMESPACE");
@@ -31,6 +48,40 @@ public final class GameModeCollection extends ConfigCollection<GameModeConfig> {
         return new GameModeCollection(localPath);
     }
 
+    /**
+     * @param recursive whether to also load configs from subfolders of the given paths
+     */
+    public static @NotNull GameModeCollection fromLocalPaths(@NotNull Collection<Path> localPaths, boolean recursive) throws IOException {
+        return new GameModeCollection(localPaths, recursive);
+    }
+
+    /**
+     * Watches the ConfigMap in Kubernetes, and shares the configs with any followers that connect to the bind address.
+     *
+     * @see #fromFanOutLeader(InetSocketAddress)
+     */
+    public static @NotNull GameModeCollection fromKubernetesAsFanOutLeader(@NotNull ApiClient client, @NotNull String namespace,
+                                                                           @NotNull String configMapName,
+                                                                           @NotNull InetSocketAddress bindAddress) throws IOException {
+        return new GameModeCollection(consumer -> new FanOutLeaderWatcher(bindAddress,
+                source -> new KubernetesConfigWatcher(client, namespace, configMapName, source), consumer));
+    }
+
+    /**
+     * Gets the configs from a fan-out leader, rather than watching the source directly.
+     *
+     * @see #fromKubernetesAsFanOutLeader(ApiClient, String, String, InetSocketAddress)
+     */
+    public static @NotNull GameModeCollection fromFanOutLeader(@NotNull InetSocketAddress leaderAddress) throws IOException {
+        return new GameModeCollection(consumer -> new FanOutFollowerWatcher(leaderAddress, consumer));
+    }
+
+    private final DerivedView<GameModeTable> table = this.registerGenerationalView(
+            (configs, generation) -> GameModeTable.build(generation, configs, this::handle), id -> true);
+    private final DerivedView<List<GameModeConfig>> enabledGameModes = this.registerView(GameModeCollection::sortEnabledGameModes);
+    private final DerivedView<Map<String, List<ConfigMap>>> enabledMaps = this.registerView(GameModeCollection::sortEnabledMaps);
+    private final DerivedView<Set<String>> fleetNames = this.registerView(GameModeCollection::collectFleetNames);
+
     private GameModeCollection(@NotNull ApiClient client, @NotNull String namespace, @NotNull String configMapName) {
         super(new Parser(), client, namespace, configMapName);
     }
@@ -39,15 +90,117 @@ public final class GameModeCollection extends ConfigCollection<GameModeConfig> {
         super(new Parser(), localPath);
     }
 
+    private GameModeCollection(@NotNull Collection<Path> localPaths, boolean recursive) throws IOException {
+        super(new Parser(), localPaths, recursive);
+    }
+
+    private GameModeCollection(@NotNull ConfigWatcher.Factory watcherFactory) throws IOException {
+        super(new Parser(), watcherFactory);
+    }
+
+    /**
+     * Gets a table of the numeric values of all game modes, for use in hot paths such as the matchmaker.
+     * The table is rebuilt at most once per generation, on the first call after a game mode changes.
+     */
+    public @NotNull GameModeTable table() {
+        return this.table.get();
+    }
+
+    /**
+     * @return the enabled game modes, in priority order, where lower numbers come first
+     */
+    public @NotNull List<GameModeConfig> enabledGameModes() {
+        return this.enabledGameModes.get();
+    }
+
+    /**
+     * @return the enabled maps of each game mode that has any, by game mode ID, in priority order
+     */
+    public @NotNull Map<String, List<ConfigMap>> enabledMaps() {
+        return this.enabledMaps.get();
+    }
+
+    /**
+     * @return the fleet names of all game modes, enabled or not
+     */
+    public @NotNull Set<String> fleetNames() {
+        return this.fleetNames.get();
+    }
+
+    private static @NotNull List<GameModeConfig> sortEnabledGameModes(@NotNull Collection<GameModeConfig> configs) {
+        return configs.stream()
+                .filter(GameModeConfig::enabled)
+                .sorted(Comparator.comparingInt(GameModeConfig::priority).thenComparing(GameModeConfig::id))
+                .toList();
+    }
+
+    private static @NotNull Map<String, List<ConfigMap>> sortEnabledMaps(@NotNull Collection<GameModeConfig> configs) {
+        Map<String, List<ConfigMap>> enabledMaps = new HashMap<>();
+        for (GameModeConfig config : configs) {
+            if (config.maps() == null) continue;
+
+            List<ConfigMap> maps = config.maps().values().stream()
+                    .filter(ConfigMap::enabled)
+                    .sorted(Comparator.comparingInt(ConfigMap::priority).thenComparing(ConfigMap::id))
+                    .toList();
+            if (!maps.isEmpty()) enabledMaps.put(config.id(), maps);
+        }
+        return Map.copyOf(enabledMaps);
+    }
+
+    private static @NotNull Set<String> collectFleetNames(@NotNull Collection<GameModeConfig> configs) {
+        Set<String> fleetNames = new HashSet<>();
+        for (GameModeConfig config : configs) {
+            fleetNames.add(config.fleetName());
+        }
+        return Set.copyOf(fleetNames);
+    }
+
     private static final class Parser implements ConfigParser<GameModeConfig> {
-        private static final Gson GSON = new GsonBuilder()
-                .registerTypeAdapter(Duration.class, new DurationAdapter().nullSafe())
-                .registerTypeAdapterFactory(NullListToEmptyFactory.INSTANCE)
-                .create();
 
         @Override
-        public @NotNull GameModeConfig parse(@NotNull String content) {
-            return GSON.fromJson(content, GameModeConfig.class);
+        public @NotNull GameModeConfig parse(@NotNull String content) throws ConfigParseException {
+            return this.read(content, null, null, null, null);
+        }
+
+        // The members of modified contents are kept by the collection, so that the next modify only scans the new contents
+        @Override
+        public @Nullable Object index(@NotNull String content) {
+            return GameModeConfigSchema.members(content);
+        }
+
+        @Override
+        public @NotNull GameModeConfig parse(@NotNull String content, @Nullable Object index, @NotNull GameModeConfig previousConfig,
+                                             @NotNull String previousContent, @Nullable Object previousIndex) throws ConfigParseException {
+            return this.read(content, members(index), previousConfig, previousContent, members(previousIndex));
+        }
+
+        private @NotNull GameModeConfig read(@NotNull String content, @Nullable List<JsonSpans.Member> members,
+                                             @Nullable GameModeConfig previousConfig, @Nullable String previousContent,
+                                             @Nullable List<JsonSpans.Member> previousMembers) throws ConfigParseException {
+            SchemaReport report = new SchemaReport();
+            GameModeConfig config;
+            try {
+                if (previousConfig != null && previousContent != null) {
+                    config = GameModeConfigSchema.readChanges(content, members, previousConfig, previousContent,
+                            previousMembers, report);
+                } else {
+                    config = GameModeConfigSchema.read(content, report);
+                }
+            } catch (IOException | RuntimeException exception) {
+                throw new ConfigParseException("Invalid game mode config", exception);
+            }
+
+            if (!report.isEmpty()) {
+                LOGGER.warn("Game mode config {} doesn't match the schema ({})", config.id(), report);
+            }
+            return config;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static @Nullable List<JsonSpans.Member> members(@Nullable Object index) {
+            // Only ever made by index(String)
+            return (List<JsonSpans.Member>) index;
         }
     }
 }
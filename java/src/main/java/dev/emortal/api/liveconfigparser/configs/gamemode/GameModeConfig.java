@@ -17,8 +17,8 @@ public record GameModeConfig(@NotNull String id, boolean enabled, @NotNull Strin
     public record PartyRestrictions(int minSize, int maxSize) {
     }
 
-    // rate is in nanoseconds
-    public record MatchmakerInfo(@NotNull MatchMethod matchMethod, @NotNull SelectMethod selectMethod, long rate, boolean backfill) {
+    // rate is in nanoseconds. The methods are null if the config uses one this version doesn't know
+    public record MatchmakerInfo(@Nullable MatchMethod matchMethod, @Nullable SelectMethod selectMethod, long rate, boolean backfill) {
 
         public enum MatchMethod {
             INSTANT, COUNTDOWN
@@ -0,0 +1,366 @@
+package dev.emortal.api.liveconfigparser.configs.gamemode;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import dev.emortal.api.liveconfigparser.configs.common.CommonSchemas;
+import dev.emortal.api.liveconfigparser.configs.common.ConfigItem;
+import dev.emortal.api.liveconfigparser.configs.common.ConfigMap;
+import dev.emortal.api.liveconfigparser.configs.common.ConfigNPC;
+import dev.emortal.api.liveconfigparser.parser.FieldTable;
+import dev.emortal.api.liveconfigparser.parser.JsonSpans;
+import dev.emortal.api.liveconfigparser.parser.SchemaReport;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static dev.emortal.api.liveconfigparser.parser.FieldTable.Presence.DEFAULTED;
+import static dev.emortal.api.liveconfigparser.parser.FieldTable.Presence.OPTIONAL;
+import static dev.emortal.api.liveconfigparser.parser.FieldTable.Presence.REQUIRED;
+
+/**
+ * Reads {@link GameModeConfig}s, matching the structs in {@code golang/pkg/liveconfig/gamemode.go}.
+ * <p>
+ * Fields that the Go side always writes are reported if missing, and fields that are optional on the Go side
+ * aren't. Either way, missing fields take the same zero values as they would on the Go side.
+ */
+final class GameModeConfigSchema {
+
+    static final int ID = 0;
+    static final int ENABLED = 1;
+    static final int FLEET_NAME = 2;
+    static final int PRIORITY = 3;
+    static final int FRIENDLY_NAME = 4;
+    static final int ACTIVITY_NOUN = 5;
+    static final int MIN_PLAYERS = 6;
+    static final int MAX_PLAYERS = 7;
+    static final int DISPLAY_ITEM = 8;
+    static final int DISPLAY_NPC = 9;
+    static final int PARTY_RESTRICTIONS = 10;
+    static final int MAPS = 11;
+    static final int MATCHMAKER_INFO = 12;
+    static final FieldTable FIELDS = FieldTable.builder()
+            .field(ID, "id", REQUIRED)
+            .field(ENABLED, "enabled", DEFAULTED)
+            .field(FLEET_NAME, "fleetName", REQUIRED)
+            // Plain values on the Go side, but configs are written by hand and routinely leave them at zero, so not reported
+            .field(PRIORITY, "priority", OPTIONAL)
+            .field(FRIENDLY_NAME, "friendlyName", DEFAULTED)
+            .field(ACTIVITY_NOUN, "activityNoun", DEFAULTED)
+            .field(MIN_PLAYERS, "minPlayers", DEFAULTED)
+            .field(MAX_PLAYERS, "maxPlayers", DEFAULTED)
+            .field(DISPLAY_ITEM, "displayItem", OPTIONAL)
+            .field(DISPLAY_NPC, "displayNpc", OPTIONAL)
+            .field(PARTY_RESTRICTIONS, "partyRestrictions", DEFAULTED)
+            .field(MAPS, "maps", OPTIONAL)
+            .field(MATCHMAKER_INFO, "matchmakerInfo", REQUIRED)
+            .build();
+
+    private static final int PARTY_MIN_SIZE = 0;
+    private static final int PARTY_MAX_SIZE = 1;
+    private static final FieldTable PARTY_FIELDS = FieldTable.builder()
+            .field(PARTY_MIN_SIZE, "minSize", DEFAULTED)
+            .field(PARTY_MAX_SIZE, "maxSize", OPTIONAL)
+            .build();
+
+    private static final int MATCHMAKER_MATCH_METHOD = 0;
+    private static final int MATCHMAKER_SELECT_METHOD = 1;
+    private static final int MATCHMAKER_RATE = 2;
+    private static final int MATCHMAKER_BACKFILL = 3;
+    private static final FieldTable MATCHMAKER_FIELDS = FieldTable.builder()
+            .field(MATCHMAKER_MATCH_METHOD, "matchMethod", REQUIRED)
+            .field(MATCHMAKER_SELECT_METHOD, "selectMethod", REQUIRED)
+            .field(MATCHMAKER_RATE, "rate", DEFAULTED)
+            .field(MATCHMAKER_BACKFILL, "backfill", OPTIONAL)
+            .build();
+
+    static @NotNull GameModeConfig read(@NotNull String contents, @NotNull SchemaReport report) throws IOException {
+        JsonReader reader = reader(contents, 0);
+        GameModeConfig config = read(reader, report);
+        if (reader.peek() != JsonToken.END_DOCUMENT) throw new JsonParseException("Unexpected content after config");
+        return config;
+    }
+
+    /**
+     * Reads a new version of a config, only decoding the fields, and entries of {@code maps}, whose text differs
+     * from the previous version, and taking the rest from the previous config. So reading costs about as much as
+     * the change, rather than the whole config.
+     * <p>
+     * Unknown and missing fields inside reused values are not reported again, as they were reported when the
+     * previous config was read.
+     */
+    static @NotNull GameModeConfig readChanges(@NotNull String contents, @NotNull GameModeConfig previousConfig,
+                                               @NotNull String previousContents, @NotNull SchemaReport report) throws IOException {
+        return readChanges(contents, members(contents), previousConfig, previousContents, null, report);
+    }
+
+    /**
+     * @param members the members of the contents, from {@link #members(String)}
+     * @param previousMembers the members of the previous contents if they were kept from reading the previous
+     *                        version, or null to find them again
+     */
+    static @NotNull GameModeConfig readChanges(@NotNull String contents, @Nullable List<JsonSpans.Member> members,
+                                               @NotNull GameModeConfig previousConfig, @NotNull String previousContents,
+                                               @Nullable List<JsonSpans.Member> previousMembers,
+                                               @NotNull SchemaReport report) throws IOException {
+        if (previousMembers == null) previousMembers = members(previousContents);
+        if (members == null || previousMembers == null) return read(contents, report);
+
+        Map<String, JsonSpans.Member> previousByName = byName(previousMembers);
+        Builder builder = new Builder();
+        for (JsonSpans.Member member : members) {
+            int field = FIELDS.indexOf(member.name());
+            if (field == -1) {
+                report.unknownField(member.name());
+                continue;
+            }
+            if (member.isNull(contents)) continue;
+
+            builder.present |= 1L << field;
+            JsonSpans.Member previous = previousByName.get(member.name());
+            if (previous != null && member.sameValue(contents, previous, previousContents)) {
+                copyField(previousConfig, field, builder);
+            } else if (field == MAPS && previous != null && previousConfig.maps() != null) {
+                builder.maps = readMapChanges(contents, member, previousConfig.maps(), previousContents, previous, report);
+            } else {
+                readField(reader(contents, member.valueStart()), field, builder, report);
+            }
+        }
+        FIELDS.checkMissing(builder.present, "", report);
+
+        return builder.build();
+    }
+
+    /**
+     * @return the top-level members of the contents, or null if they can't be scanned
+     */
+    static @Nullable List<JsonSpans.Member> members(@NotNull String contents) {
+        return JsonSpans.members(contents, 0, contents.length());
+    }
+
+    static @NotNull GameModeConfig read(@NotNull JsonReader reader, @NotNull SchemaReport report) throws IOException {
+        Builder builder = new Builder();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            int field = FIELDS.nextField(reader, "", report);
+            if (field == -1) continue;
+
+            builder.present |= 1L << field;
+            readField(reader, field, builder, report);
+        }
+        reader.endObject();
+        FIELDS.checkMissing(builder.present, "", report);
+
+        return builder.build();
+    }
+
+    /**
+     * Reads the value of a single top-level field into the builder.
+     */
+    static void readField(@NotNull JsonReader reader, int field, @NotNull Builder builder,
+                          @NotNull SchemaReport report) throws IOException {
+        switch (field) {
+            case ID -> builder.id = reader.nextString();
+            case ENABLED -> builder.enabled = reader.nextBoolean();
+            case FLEET_NAME -> builder.fleetName = reader.nextString();
+            case PRIORITY -> builder.priority = reader.nextInt();
+            case FRIENDLY_NAME -> builder.friendlyName = reader.nextString();
+            case ACTIVITY_NOUN -> builder.activityNoun = reader.nextString();
+            case MIN_PLAYERS -> builder.minPlayers = reader.nextInt();
+            case MAX_PLAYERS -> builder.maxPlayers = reader.nextInt();
+            case DISPLAY_ITEM -> builder.displayItem = CommonSchemas.readItem(reader, "displayItem.", report);
+            case DISPLAY_NPC -> builder.displayNpc = CommonSchemas.readNpc(reader, "displayNpc.", report);
+            case PARTY_RESTRICTIONS -> builder.partyRestrictions = readPartyRestrictions(reader, report);
+            case MAPS -> builder.maps = readMaps(reader, report);
+            case MATCHMAKER_INFO -> builder.matchmakerInfo = readMatchmakerInfo(reader, report);
+            default -> throw new IllegalArgumentException("Unknown field " + field);
+        }
+    }
+
+    /**
+     * Copies the value of a single top-level field from a config into the builder.
+     */
+    private static void copyField(@NotNull GameModeConfig config, int field, @NotNull Builder builder) {
+        switch (field) {
+            case ID -> builder.id = config.id();
+            case ENABLED -> builder.enabled = config.enabled();
+            case FLEET_NAME -> builder.fleetName = config.fleetName();
+            case PRIORITY -> builder.priority = config.priority();
+            case FRIENDLY_NAME -> builder.friendlyName = config.friendlyName();
+            case ACTIVITY_NOUN -> builder.activityNoun = config.activityNoun();
+            case MIN_PLAYERS -> builder.minPlayers = config.minPlayers();
+            case MAX_PLAYERS -> builder.maxPlayers = config.maxPlayers();
+            case DISPLAY_ITEM -> builder.displayItem = config.displayItem();
+            case DISPLAY_NPC -> builder.displayNpc = config.displayNpc();
+            case PARTY_RESTRICTIONS -> builder.partyRestrictions = config.partyRestrictions();
+            case MAPS -> builder.maps = config.maps();
+            case MATCHMAKER_INFO -> builder.matchmakerInfo = config.matchmakerInfo();
+            default -> throw new IllegalArgumentException("Unknown field " + field);
+        }
+    }
+
+    private static @NotNull GameModeConfig.PartyRestrictions readPartyRestrictions(@NotNull JsonReader reader,
+                                                                                   @NotNull SchemaReport report) throws IOException {
+        int minSize = 0;
+        int maxSize = 0;
+
+        long present = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            int field = PARTY_FIELDS.nextField(reader, "partyRestrictions.", report);
+            if (field == -1) continue;
+
+            present |= 1L << field;
+            switch (field) {
+                case PARTY_MIN_SIZE -> minSize = reader.nextInt();
+                case PARTY_MAX_SIZE -> maxSize = reader.nextInt();
+            }
+        }
+        reader.endObject();
+        PARTY_FIELDS.checkMissing(present, "partyRestrictions.", report);
+
+        return new GameModeConfig.PartyRestrictions(minSize, maxSize);
+    }
+
+    private static @NotNull Map<String, ConfigMap> readMaps(@NotNull JsonReader reader,
+                                                           @NotNull SchemaReport report) throws IOException {
+        Map<String, ConfigMap> maps = new LinkedHashMap<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            maps.put(key, CommonSchemas.readMap(reader, "maps." + key + ".", report));
+        }
+        reader.endObject();
+        return Collections.unmodifiableMap(maps);
+    }
+
+    private static @NotNull Map<String, ConfigMap> readMapChanges(@NotNull String contents, @NotNull JsonSpans.Member member,
+                                                                 @NotNull Map<String, ConfigMap> previousMaps,
+                                                                 @NotNull String previousContents, @NotNull JsonSpans.Member previous,
+                                                                 @NotNull SchemaReport report) throws IOException {
+        List<JsonSpans.Member> entries = JsonSpans.members(contents, member.valueStart(), member.valueEnd());
+        List<JsonSpans.Member> previousEntries = JsonSpans.members(previousContents, previous.valueStart(), previous.valueEnd());
+        if (entries == null || previousEntries == null) return readMaps(reader(contents, member.valueStart()), report);
+
+        Map<String, JsonSpans.Member> previousByKey = byName(previousEntries);
+        Map<String, ConfigMap> maps = new LinkedHashMap<>();
+        for (JsonSpans.Member entry : entries) {
+            if (entry.isNull(contents)) continue;
+
+            JsonSpans.Member previousEntry = previousByKey.get(entry.name());
+            ConfigMap previousMap = previousMaps.get(entry.name());
+            if (previousEntry != null && previousMap != null && entry.sameValue(contents, previousEntry, previousContents)) {
+                maps.put(entry.name(), previousMap);
+            } else {
+                JsonReader reader = reader(contents, entry.valueStart());
+                maps.put(entry.name(), CommonSchemas.readMap(reader, "maps." + entry.name() + ".", report));
+            }
+        }
+        return Collections.unmodifiableMap(maps);
+    }
+
+    private static @NotNull GameModeConfig.MatchmakerInfo readMatchmakerInfo(@NotNull JsonReader reader,
+                                                                             @NotNull SchemaReport report) throws IOException {
+        GameModeConfig.MatchmakerInfo.MatchMethod matchMethod = null;
+        GameModeConfig.MatchmakerInfo.SelectMethod selectMethod = null;
+        long rate = 0;
+        boolean backfill = false;
+
+        long present = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            int field = MATCHMAKER_FIELDS.nextField(reader, "matchmakerInfo.", report);
+            if (field == -1) continue;
+
+            present |= 1L << field;
+            switch (field) {
+                case MATCHMAKER_MATCH_METHOD -> matchMethod = readEnum(reader, GameModeConfig.MatchmakerInfo.MatchMethod.class,
+                        "matchmakerInfo.matchMethod", report);
+                case MATCHMAKER_SELECT_METHOD -> selectMethod = readEnum(reader, GameModeConfig.MatchmakerInfo.SelectMethod.class,
+                        "matchmakerInfo.selectMethod", report);
+                case MATCHMAKER_RATE -> rate = reader.nextLong();
+                case MATCHMAKER_BACKFILL -> backfill = reader.nextBoolean();
+            }
+        }
+        reader.endObject();
+        MATCHMAKER_FIELDS.checkMissing(present, "matchmakerInfo.", report);
+
+        return new GameModeConfig.MatchmakerInfo(matchMethod, selectMethod, rate, backfill);
+    }
+
+    /**
+     * @return the constant with the given name, or null if there isn't one, such as one added on the Go side
+     */
+    private static <E extends Enum<E>> @Nullable E readEnum(@NotNull JsonReader reader, @NotNull Class<E> type, @NotNull String path,
+                                                           @NotNull SchemaReport report) throws IOException {
+        String value = reader.nextString();
+        try {
+            return Enum.valueOf(type, value);
+        } catch (IllegalArgumentException exception) {
+            report.unknownValue(path + "=" + value);
+            return null;
+        }
+    }
+
+    private static @NotNull Map<String, JsonSpans.Member> byName(@NotNull List<JsonSpans.Member> members) {
+        Map<String, JsonSpans.Member> byName = new HashMap<>();
+        for (JsonSpans.Member member : members) {
+            byName.put(member.name(), member);
+        }
+        return byName;
+    }
+
+    /**
+     * @return a reader positioned at the value starting at the given index
+     */
+    private static @NotNull JsonReader reader(@NotNull String contents, int start) throws IOException {
+        StringReader input = new StringReader(contents);
+        input.skip(start);
+
+        JsonReader reader = new JsonReader(input);
+        reader.setLenient(true); // Matches Gson.fromJson, which configs used to be parsed with
+        return reader;
+    }
+
+    /**
+     * The fields of a config being read, starting with the value each field takes if missing.
+     */
+    static final class Builder {
+        long present;
+
+        String id;
+        boolean enabled;
+        String fleetName;
+        int priority;
+        String friendlyName = "";
+        String activityNoun = "";
+        int minPlayers;
+        int maxPlayers;
+        ConfigItem displayItem;
+        ConfigNPC displayNpc;
+        GameModeConfig.PartyRestrictions partyRestrictions = new GameModeConfig.PartyRestrictions(0, 0);
+        Map<String, ConfigMap> maps;
+        GameModeConfig.MatchmakerInfo matchmakerInfo;
+
+        @NotNull GameModeConfig build() {
+            return new GameModeConfig(this.id, this.enabled, this.fleetName, this.priority, this.friendlyName,
+                    this.activityNoun, this.minPlayers, this.maxPlayers, this.displayItem, this.displayNpc,
+                    this.partyRestrictions, this.maps, this.matchmakerInfo);
+        }
+    }
+
+    private GameModeConfigSchema() {
+    }
+}
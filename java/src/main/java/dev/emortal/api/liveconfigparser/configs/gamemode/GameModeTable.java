@@ -0,0 +1,135 @@
+package dev.emortal.api.liveconfigparser.configs.gamemode;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * A read-only snapshot of the numeric game mode values used by the matchmaker, stored as one primitive array per
+ * value and indexed by {@link GameModeCollection#handle(String) config handle}.
+ * <p>
+ * Reading from the table involves no hashing, boxing or record dereferences, so it is suited to tight matching
+ * loops. A new table is built for each generation, so a table can be kept for as long as a consistent view is needed.
+ */
+public final class GameModeTable {
+
+    private final long generation;
+
+    private final GameModeConfig[] configs;
+    private final boolean[] enabled;
+    private final int[] priority;
+    private final int[] minPlayers;
+    private final int[] maxPlayers;
+    private final int[] partyMinSize;
+    private final int[] partyMaxSize;
+    private final long[] matchmakerRate;
+
+    private GameModeTable(long generation, int size) {
+        this.generation = generation;
+
+        this.configs = new GameModeConfig[size];
+        this.enabled = new boolean[size];
+        this.priority = new int[size];
+        this.minPlayers = new int[size];
+        this.maxPlayers = new int[size];
+        this.partyMinSize = new int[size];
+        this.partyMaxSize = new int[size];
+        this.matchmakerRate = new long[size];
+    }
+
+    static @NotNull GameModeTable build(long generation, @NotNull Collection<GameModeConfig> allConfigs,
+                                        @NotNull ToIntFunction<String> handles) {
+        // Copy, so that configs loaded while building can't change the size. Handles are assigned before loading.
+        List<GameModeConfig> configs = List.copyOf(allConfigs);
+
+        int size = 0;
+        for (GameModeConfig config : configs) {
+            size = Math.max(size, handles.applyAsInt(config.id()) + 1);
+        }
+
+        GameModeTable table = new GameModeTable(generation, size);
+        for (GameModeConfig config : configs) {
+            int handle = handles.applyAsInt(config.id());
+
+            table.configs[handle] = config;
+            table.enabled[handle] = config.enabled();
+            table.priority[handle] = config.priority();
+            table.minPlayers[handle] = config.minPlayers();
+            table.maxPlayers[handle] = config.maxPlayers();
+
+            GameModeConfig.PartyRestrictions partyRestrictions = config.partyRestrictions();
+            if (partyRestrictions != null) {
+                table.partyMinSize[handle] = partyRestrictions.minSize();
+                table.partyMaxSize[handle] = partyRestrictions.maxSize();
+            }
+
+            GameModeConfig.MatchmakerInfo matchmakerInfo = config.matchmakerInfo();
+            if (matchmakerInfo != null) {
+                table.matchmakerRate[handle] = matchmakerInfo.rate();
+            }
+        }
+        return table;
+    }
+
+    /**
+     * @return the generation of the collection this table was built from
+     */
+    public long generation() {
+        return this.generation;
+    }
+
+    /**
+     * @return one more than the highest handle in this table, for iterating over every handle
+     */
+    public int size() {
+        return this.configs.length;
+    }
+
+    /**
+     * Handles of configs loaded after this table was built are out of range, so check this before reading the values
+     * of a handle that may be newer than the table.
+     *
+     * @return true if a config with the handle existed in this table's generation. All values of absent configs are 0.
+     */
+    public boolean isPresent(int handle) {
+        return handle >= 0 && handle < this.configs.length && this.configs[handle] != null;
+    }
+
+    public @Nullable GameModeConfig config(int handle) {
+        return this.configs[handle];
+    }
+
+    public boolean enabled(int handle) {
+        return this.enabled[handle];
+    }
+
+    public int priority(int handle) {
+        return this.priority[handle];
+    }
+
+    public int minPlayers(int handle) {
+        return this.minPlayers[handle];
+    }
+
+    public int maxPlayers(int handle) {
+        return this.maxPlayers[handle];
+    }
+
+    public int partyMinSize(int handle) {
+        return this.partyMinSize[handle];
+    }
+
+    public int partyMaxSize(int handle) {
+        return this.partyMaxSize[handle];
+    }
+
+    /**
+     * @return the matchmaker rate in nanoseconds
+     */
+    public long matchmakerRate(int handle) {
+        return this.matchmakerRate[handle];
+    }
+}
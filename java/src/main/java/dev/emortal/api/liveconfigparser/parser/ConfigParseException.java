@@ -7,4 +7,8 @@ public final class ConfigParseException extends Exception {
     public ConfigParseException(@NotNull String fileName, @NotNull String fileContent) {
         super("Failed to parse config file " + fileName + ":\n" + fileContent);
     }
+
+    public ConfigParseException(@NotNull String message, @NotNull Throwable cause) {
+        super(message, cause);
+    }
 }
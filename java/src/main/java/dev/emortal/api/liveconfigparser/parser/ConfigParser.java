@@ -1,8 +1,27 @@
 package dev.emortal.api.liveconfigparser.parser;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public interface ConfigParser<T> {
 
     @NotNull T parse(@NotNull String config) throws ConfigParseException;
+
+    /**
+     * Makes an index of the contents of a modified config, such as where each field is, which the collection keeps
+     * with the contents and passes back when they are modified again. By default, there is no index.
+     */
+    default @Nullable Object index(@NotNull String config) {
+        return null;
+    }
+
+    /**
+     * Parses a new version of a config, given the previous version, the contents it was parsed from, and the indexes
+     * of both contents, if {@link #index(String)} made them. Parsers may use these to only decode the parts of the
+     * contents that changed, and reuse the rest of the previous config. By default, the whole config is parsed again.
+     */
+    default @NotNull T parse(@NotNull String config, @Nullable Object index, @NotNull T previousConfig,
+                             @NotNull String previousConfigContents, @Nullable Object previousIndex) throws ConfigParseException {
+        return this.parse(config);
+    }
 }
@@ -0,0 +1,177 @@
+package dev.emortal.api.liveconfigparser.parser;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The fields of a JSON object schema, with a precomputed perfect hash from field name to field index.
+ * <p>
+ * The table is built once per schema, so looking up a field while parsing is a single hash, multiply and string
+ * comparison, with no reflection or map lookups.
+ * <p>
+ * Each field declares what happens when it is missing: required fields fail the parse, defaulted fields are reported
+ * to the {@link SchemaReport} and take their default, and optional fields silently take their default.
+ */
+public final class FieldTable {
+    // With at most 64 fields and distinct hash codes, a multiplier is found long before the table gets this large
+    private static final int MAX_BITS = 16;
+
+    private final String[] names;
+    private final Presence[] presences;
+
+    private final String[] slotNames;
+    private final int[] slotIndices;
+    private final int multiplier;
+    private final int shift;
+
+    private FieldTable(@NotNull List<String> names, @NotNull List<Presence> presences) {
+        this.names = names.toArray(String[]::new);
+        this.presences = presences.toArray(Presence[]::new);
+
+        // Find a multiplier that maps every name to a different slot, growing the table if none can be found
+        int bits = Math.max(3, 32 - Integer.numberOfLeadingZeros(this.names.length * 2 - 1));
+        while (bits <= MAX_BITS) {
+            int size = 1 << bits;
+            for (int multiplier = 1; multiplier < 1 << 16; multiplier += 2) {
+                int[] indices = this.tryMultiplier(multiplier, 32 - bits, size);
+                if (indices == null) continue;
+
+                this.slotNames = new String[size];
+                for (int i = 0; i < size; i++) {
+                    if (indices[i] != -1) this.slotNames[i] = this.names[indices[i]];
+                }
+                this.slotIndices = indices;
+                this.multiplier = multiplier;
+                this.shift = 32 - bits;
+                return;
+            }
+            bits++;
+        }
+        throw new IllegalArgumentException("No perfect hash found for fields " + names);
+    }
+
+    private int[] tryMultiplier(int multiplier, int shift, int size) {
+        int[] indices = new int[size];
+        Arrays.fill(indices, -1);
+
+        for (int i = 0; i < this.names.length; i++) {
+            int slot = (this.names[i].hashCode() * multiplier) >>> shift;
+            if (indices[slot] != -1) return null; // Collision
+            indices[slot] = i;
+        }
+        return indices;
+    }
+
+    /**
+     * @return the index of the field, or -1 if the schema has no field with the name
+     */
+    public int indexOf(@NotNull String name) {
+        int slot = (name.hashCode() * this.multiplier) >>> this.shift;
+        String slotName = this.slotNames[slot];
+        return slotName != null && slotName.equals(name) ? this.slotIndices[slot] : -1;
+    }
+
+    public @NotNull String name(int index) {
+        return this.names[index];
+    }
+
+    public int size() {
+        return this.names.length;
+    }
+
+    /**
+     * Reads the name of the next field of an object. Unknown fields are reported and skipped, and null values are
+     * skipped, so that they take their default as if the field were missing.
+     *
+     * @param path the path of the object, prefixed to field names in the report, e.g. {@code maps.city.}
+     * @return the index of the field, with the reader positioned at its value, or -1 if it was skipped
+     */
+    public int nextField(@NotNull JsonReader reader, @NotNull String path, @NotNull SchemaReport report) throws IOException {
+        String name = reader.nextName();
+        int index = this.indexOf(name);
+        if (index == -1) {
+            report.unknownField(path + name);
+            reader.skipValue();
+            return -1;
+        }
+
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return -1;
+        }
+        return index;
+    }
+
+    /**
+     * Checks that every field that may not be missing was present.
+     *
+     * @param present a bit set of the indices of the fields that were present
+     * @param path the path of the object, prefixed to field names in the report, e.g. {@code maps.city.}
+     * @throws JsonParseException if a required field is missing
+     */
+    public void checkMissing(long present, @NotNull String path, @NotNull SchemaReport report) {
+        for (int i = 0; i < this.names.length; i++) {
+            if ((present & (1L << i)) != 0) continue;
+
+            switch (this.presences[i]) {
+                case REQUIRED -> throw new JsonParseException("Missing required field '" + path + this.names[i] + "'");
+                case DEFAULTED -> report.missingField(path + this.names[i]);
+                case OPTIONAL -> {
+                }
+            }
+        }
+    }
+
+    public static @NotNull Builder builder() {
+        return new Builder();
+    }
+
+    public enum Presence {
+        REQUIRED, DEFAULTED, OPTIONAL
+    }
+
+    public static final class Builder {
+
+        private final List<String> names = new ArrayList<>();
+        private final List<Presence> presences = new ArrayList<>();
+        // Field names by hash code, as names with equal hash codes can't be told apart by any multiplier
+        private final Map<Integer, String> hashCodes = new HashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * @param index the index the field is expected to get, as a check that the schema's constants match the
+         *              order the fields are added in
+         */
+        public @NotNull Builder field(int index, @NotNull String name, @NotNull Presence presence) {
+            if (index != this.names.size()) {
+                throw new IllegalArgumentException("Field '%s' should have index %s, not %s".formatted(name, this.names.size(), index));
+            }
+            if (index >= Long.SIZE) throw new IllegalArgumentException("Too many fields");
+
+            String existing = this.hashCodes.putIfAbsent(name.hashCode(), name);
+            if (name.equals(existing)) throw new IllegalArgumentException("Duplicate field '%s'".formatted(name));
+            if (existing != null) {
+                throw new IllegalArgumentException("Field '%s' has the same hash code as '%s'".formatted(name, existing));
+            }
+
+            this.names.add(name);
+            this.presences.add(presence);
+            return this;
+        }
+
+        public @NotNull FieldTable build() {
+            return new FieldTable(this.names, this.presences);
+        }
+    }
+}
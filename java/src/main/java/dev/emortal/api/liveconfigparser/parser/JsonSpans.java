@@ -0,0 +1,148 @@
+package dev.emortal.api.liveconfigparser.parser;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds where the members of a JSON object are in its text, without decoding their values, so that the text of a
+ * member can be compared with the text of the same member in an earlier version of the config.
+ * <p>
+ * Only the structure is checked, so values must still be decoded with a {@link com.google.gson.stream.JsonReader},
+ * which checks them properly. Anything unusual, such as comments or escaped names, makes the scan give up, and the
+ * caller should then decode the whole object.
+ */
+public final class JsonSpans {
+
+    /**
+     * A member of a JSON object, with the text of its value between {@code valueStart} and {@code valueEnd}.
+     */
+    public record Member(@NotNull String name, int valueStart, int valueEnd) {
+
+        /**
+         * @return true if the value of this member in the text is the same as the value of the other member in its text
+         */
+        public boolean sameValue(@NotNull String text, @NotNull Member other, @NotNull String otherText) {
+            int length = this.valueEnd - this.valueStart;
+            return length == other.valueEnd - other.valueStart
+                    && text.regionMatches(this.valueStart, otherText, other.valueStart, length);
+        }
+
+        public boolean isNull(@NotNull String text) {
+            return this.valueEnd - this.valueStart == 4 && text.startsWith("null", this.valueStart);
+        }
+    }
+
+    /**
+     * @return the members of the object between start and end in order, or null if the text can't be scanned
+     */
+    public static @Nullable List<Member> members(@NotNull String text, int start, int end) {
+        int i = skipWhitespace(text, start, end);
+        if (i >= end || text.charAt(i) != '{') return null;
+
+        List<Member> members = new ArrayList<>();
+        i = skipWhitespace(text, i + 1, end);
+        if (i < end && text.charAt(i) == '}') {
+            return skipWhitespace(text, i + 1, end) == end ? members : null;
+        }
+
+        Set<String> names = new HashSet<>();
+        while (i < end && text.charAt(i) == '"') {
+            int nameEnd = skipString(text, i, end);
+            if (nameEnd == -1) return null;
+
+            // Duplicate names would make which value counts depend on the decoder
+            String name = text.substring(i + 1, nameEnd - 1);
+            if (name.indexOf('\\') != -1 || !names.add(name)) return null;
+
+            i = skipWhitespace(text, nameEnd, end);
+            if (i >= end || text.charAt(i) != ':') return null;
+
+            int valueStart = skipWhitespace(text, i + 1, end);
+            int valueEnd = skipValue(text, valueStart, end);
+            if (valueEnd == -1) return null;
+            members.add(new Member(name, valueStart, valueEnd));
+
+            i = skipWhitespace(text, valueEnd, end);
+            if (i >= end) return null;
+            if (text.charAt(i) == '}') {
+                return skipWhitespace(text, i + 1, end) == end ? members : null;
+            }
+            if (text.charAt(i) != ',') return null;
+            i = skipWhitespace(text, i + 1, end);
+        }
+        return null;
+    }
+
+    private static int skipValue(@NotNull String text, int start, int end) {
+        if (start >= end) return -1;
+
+        char first = text.charAt(start);
+        if (first == '"') return skipString(text, start, end);
+
+        if (first == '{' || first == '[') {
+            int depth = 0;
+            int i = start;
+            while (i < end) {
+                char c = text.charAt(i);
+                if (c == '"') {
+                    i = skipString(text, i, end);
+                    if (i == -1) return -1;
+                    continue;
+                }
+
+                if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    if (--depth == 0) return i + 1;
+                }
+                i++;
+            }
+            return -1;
+        }
+
+        // Numbers, true, false and null
+        if (first != '-' && (first < '0' || first > '9') && first != 't' && first != 'f' && first != 'n') return -1;
+        int i = start;
+        while (i < end) {
+            char c = text.charAt(i);
+            if (c == ',' || c == '}' || c == ']' || isWhitespace(c)) break;
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return the index after the closing quote of the string starting at start, or -1 if it isn't closed
+     */
+    private static int skipString(@NotNull String text, int start, int end) {
+        for (int i = start + 1; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '"') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipWhitespace(@NotNull String text, int start, int end) {
+        int i = start;
+        while (i < end && isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private JsonSpans() {
+    }
+}
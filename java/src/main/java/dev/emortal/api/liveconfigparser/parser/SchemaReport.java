@@ -0,0 +1,66 @@
+package dev.emortal.api.liveconfigparser.parser;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The differences between a parsed config and the schema it was parsed with, such as fields or enum values added on
+ * the Go side that this version doesn't know about, or fields this version expects that the config doesn't have.
+ * <p>
+ * None of them stop the config from being parsed, but they usually mean the Go and Java configs are out of sync.
+ */
+public final class SchemaReport {
+
+    private List<String> unknownFields;
+    private List<String> missingFields;
+    private List<String> unknownValues;
+
+    public void unknownField(@NotNull String path) {
+        if (this.unknownFields == null) this.unknownFields = new ArrayList<>();
+        this.unknownFields.add(path);
+    }
+
+    public void missingField(@NotNull String path) {
+        if (this.missingFields == null) this.missingFields = new ArrayList<>();
+        this.missingFields.add(path);
+    }
+
+    public void unknownValue(@NotNull String pathAndValue) {
+        if (this.unknownValues == null) this.unknownValues = new ArrayList<>();
+        this.unknownValues.add(pathAndValue);
+    }
+
+    /**
+     * @return the paths of fields in the config that aren't in the schema, e.g. {@code maps.city.displayItem.glow}
+     */
+    public @NotNull List<String> unknownFields() {
+        return this.unknownFields == null ? List.of() : List.copyOf(this.unknownFields);
+    }
+
+    /**
+     * @return the paths of fields in the schema that were missing from the config, and were given their default
+     */
+    public @NotNull List<String> missingFields() {
+        return this.missingFields == null ? List.of() : List.copyOf(this.missingFields);
+    }
+
+    /**
+     * @return the paths and values of enum fields with a value the schema doesn't know, e.g.
+     * {@code matchmakerInfo.matchMethod=SOMETIMES}, which were left null
+     */
+    public @NotNull List<String> unknownValues() {
+        return this.unknownValues == null ? List.of() : List.copyOf(this.unknownValues);
+    }
+
+    public boolean isEmpty() {
+        return this.unknownFields == null && this.missingFields == null && this.unknownValues == null;
+    }
+
+    @Override
+    public String toString() {
+        return "unknown fields: " + this.unknownFields() + ", missing fields: " + this.missingFields()
+                + ", unknown values: " + this.unknownValues();
+    }
+}
@@ -1,9 +1,17 @@
 package dev.emortal.api.liveconfigparser.watcher;
 
+import org.jetbrains.annotations.NotNull;
+
 import java.io.IOException;
 
 public interface ConfigWatcher extends AutoCloseable {
 
     @Override
     void close() throws IOException;
+
+    @FunctionalInterface
+    interface Factory {
+
+        @NotNull ConfigWatcher create(@NotNull ConfigWatcherConsumer consumer) throws IOException;
+    }
 }
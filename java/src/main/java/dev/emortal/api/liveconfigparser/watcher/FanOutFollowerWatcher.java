@@ -0,0 +1,176 @@
+package dev.emortal.api.liveconfigparser.watcher;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receives configs from a {@link FanOutLeaderWatcher} rather than watching the config source directly.
+ * <p>
+ * If the connection to the leader is lost, the follower reconnects and is sent only the updates it missed, or a
+ * full snapshot if the leader no longer has them or has restarted.
+ */
+public final class FanOutFollowerWatcher implements ConfigWatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FanOutFollowerWatcher.class);
+
+    private static final long MIN_RECONNECT_DELAY = 250;
+    private static final long MAX_RECONNECT_DELAY = TimeUnit.SECONDS.toMillis(30);
+
+    private final @NotNull InetSocketAddress leaderAddress;
+    private final @NotNull ConfigWatcherConsumer consumer;
+
+    private final Thread thread;
+    private final CountDownLatch initialSyncLatch = new CountDownLatch(1);
+
+    // The configs the consumer has accepted. Only accessed by the connection thread
+    private final Map<String, String> files = new HashMap<>();
+    private long epoch = FanOutProtocol.NO_EPOCH;
+    private long sequence = FanOutProtocol.NO_SEQUENCE;
+
+    private volatile Socket socket;
+    private volatile boolean closed;
+
+    public FanOutFollowerWatcher(@NotNull InetSocketAddress leaderAddress, @NotNull ConfigWatcherConsumer consumer) {
+        this.leaderAddress = leaderAddress;
+        this.consumer = consumer;
+
+        this.thread = Thread.ofVirtual().name("config-fan-out-follower").start(this::run);
+
+        try {
+            boolean result = this.initialSyncLatch.await(5, TimeUnit.SECONDS);
+            if (!result) {
+                LOGGER.error("Timed out getting initial configs from leader {}", leaderAddress);
+            } else {
+                LOGGER.info("Got initial configs from leader {}", leaderAddress);
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        long reconnectDelay = MIN_RECONNECT_DELAY;
+        while (!this.closed) {
+            try (Socket socket = new Socket()) {
+                this.socket = socket;
+                if (this.closed) return; // Closed before the socket was set, so close() couldn't close it
+
+                socket.connect(this.leaderAddress);
+                socket.setTcpNoDelay(true);
+                FanOutProtocol.writeHello(new DataOutputStream(socket.getOutputStream()), this.epoch, this.sequence);
+
+                DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                while (true) {
+                    this.readFrame(input);
+                    reconnectDelay = MIN_RECONNECT_DELAY; // Only back off while we can't get anything from the leader
+                }
+            } catch (IOException exception) {
+                if (this.closed) return;
+                LOGGER.warn("Lost connection to config leader {}, reconnecting in {}ms", this.leaderAddress, reconnectDelay, exception);
+            } catch (RuntimeException exception) {
+                // The consumer rejected an update. Ask for a snapshot on reconnecting, which delivers whatever the
+                // consumer hasn't accepted yet, as files only holds what it has
+                this.epoch = FanOutProtocol.NO_EPOCH;
+                this.sequence = FanOutProtocol.NO_SEQUENCE;
+                LOGGER.error("Failed to apply config update from leader {}, reconnecting in {}ms", this.leaderAddress, reconnectDelay, exception);
+            }
+
+            try {
+                Thread.sleep(reconnectDelay);
+            } catch (InterruptedException exception) {
+                return;
+            }
+            reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY);
+        }
+    }
+
+    private void readFrame(@NotNull DataInputStream input) throws IOException {
+        byte type = input.readByte();
+        if (type == FanOutProtocol.SNAPSHOT) {
+            this.readSnapshot(input);
+            return;
+        }
+
+        long sequence = input.readLong();
+        String fileName = FanOutProtocol.readString(input);
+        String fileContents = type == FanOutProtocol.DELETE ? null : FanOutProtocol.readString(input);
+
+        if (sequence <= this.sequence) return; // Already applied
+        if (sequence != this.sequence + 1) {
+            // Reconnecting will get us the missing updates
+            throw new IOException("Missed config updates (expected %s, got %s)".formatted(this.sequence + 1, sequence));
+        }
+        this.sequence = sequence;
+
+        switch (type) {
+            case FanOutProtocol.CREATE, FanOutProtocol.MODIFY -> this.applyUpdate(fileName, fileContents);
+            case FanOutProtocol.DELETE -> {
+                if (this.files.containsKey(fileName)) {
+                    this.consumer.onConfigDelete(fileName);
+                    this.files.remove(fileName);
+                }
+            }
+            default -> throw new IOException("Unknown frame type " + type);
+        }
+        this.initialSyncLatch.countDown();
+    }
+
+    private void readSnapshot(@NotNull DataInputStream input) throws IOException {
+        long epoch = input.readLong();
+        long sequence = input.readLong();
+
+        // Any configs we have that aren't in the snapshot have been deleted
+        Set<String> deletedConfigs = new HashSet<>(this.files.keySet());
+
+        int count = input.readInt();
+        for (int i = 0; i < count; i++) {
+            String fileName = FanOutProtocol.readString(input);
+            String fileContents = FanOutProtocol.readString(input);
+
+            deletedConfigs.remove(fileName);
+            this.applyUpdate(fileName, fileContents);
+        }
+
+        for (String deletedConfig : deletedConfigs) {
+            this.consumer.onConfigDelete(deletedConfig);
+            this.files.remove(deletedConfig);
+        }
+
+        this.epoch = epoch;
+        this.sequence = sequence;
+        this.initialSyncLatch.countDown();
+    }
+
+    private void applyUpdate(@NotNull String fileName, @NotNull String fileContents) {
+        // Only recorded once the consumer has it, so that a snapshot after a failure delivers it again
+        String previous = this.files.get(fileName);
+        if (previous == null) {
+            this.consumer.onConfigCreate(fileName, fileContents);
+        } else if (!previous.equals(fileContents)) {
+            this.consumer.onConfigModify(fileName, fileContents);
+        }
+        this.files.put(fileName, fileContents);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.closed = true;
+        this.thread.interrupt();
+
+        Socket socket = this.socket;
+        if (socket != null) socket.close();
+    }
+}
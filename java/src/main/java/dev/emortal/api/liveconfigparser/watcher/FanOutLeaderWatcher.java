@@ -0,0 +1,230 @@
+package dev.emortal.api.liveconfigparser.watcher;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Watches a config source on behalf of many {@link FanOutFollowerWatcher}s, so that only one node puts load on the
+ * source, such as the Kubernetes API server, however many nodes need the configs.
+ * <p>
+ * Every change from the source is given a sequence number and sent to all followers. The most recent updates are
+ * kept, so that a follower that reconnects only has to be sent what it missed, rather than a full snapshot.
+ * <p>
+ * Followers that fall too far behind are disconnected, rather than letting them slow down every other follower.
+ * They catch up when they reconnect. Choosing which node leads is left to the deployment, e.g. by running the leader
+ * as a single sidecar or service.
+ */
+public final class FanOutLeaderWatcher implements ConfigWatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FanOutLeaderWatcher.class);
+
+    public static final int DEFAULT_LOG_SIZE = 1024;
+    private static final int FOLLOWER_QUEUE_SIZE = 1024;
+
+    private final @NotNull ConfigWatcherConsumer consumer;
+    private final int logSize;
+    // Random, so that followers can tell when the leader has restarted and its sequence numbers have reset
+    private final long epoch = new SecureRandom().nextLong(1, Long.MAX_VALUE);
+
+    private final ServerSocket serverSocket;
+    private final ConfigWatcher source;
+
+    // All of these are guarded by this watcher's lock
+    private final Map<String, String> files = new LinkedHashMap<>();
+    private final ArrayDeque<byte[]> log = new ArrayDeque<>();
+    private final Set<Follower> followers = new HashSet<>();
+    private long sequence = 0;
+    private boolean closed;
+
+    /**
+     * @param bindAddress the address to accept followers on
+     * @param source creates the watcher for the actual config source
+     * @param consumer the consumer for this node's own configs
+     */
+    public FanOutLeaderWatcher(@NotNull InetSocketAddress bindAddress, @NotNull ConfigWatcher.Factory source,
+                               @NotNull ConfigWatcherConsumer consumer) throws IOException {
+        this(bindAddress, source, consumer, DEFAULT_LOG_SIZE);
+    }
+
+    /**
+     * @param logSize the number of recent updates to keep for followers to catch up from
+     */
+    public FanOutLeaderWatcher(@NotNull InetSocketAddress bindAddress, @NotNull ConfigWatcher.Factory source,
+                               @NotNull ConfigWatcherConsumer consumer, int logSize) throws IOException {
+        this.consumer = consumer;
+        this.logSize = logSize;
+
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(bindAddress);
+        LOGGER.info("Accepting config followers on {}", this.serverSocket.getLocalSocketAddress());
+
+        try {
+            this.source = source.create(new SourceConsumer());
+        } catch (IOException | RuntimeException exception) {
+            this.serverSocket.close();
+            throw exception;
+        }
+
+        Thread.ofVirtual().name("config-fan-out-accept").start(this::acceptFollowers);
+    }
+
+    /**
+     * @return the address followers can connect to, useful when binding to port 0
+     */
+    public @NotNull InetSocketAddress address() {
+        return (InetSocketAddress) this.serverSocket.getLocalSocketAddress();
+    }
+
+    private void acceptFollowers() {
+        while (!this.serverSocket.isClosed()) {
+            try {
+                Socket socket = this.serverSocket.accept();
+                Thread.ofVirtual().name("config-fan-out-" + socket.getRemoteSocketAddress()).start(() -> this.serveFollower(socket));
+            } catch (IOException exception) {
+                if (!this.serverSocket.isClosed()) LOGGER.error("Failed to accept config follower", exception);
+            }
+        }
+    }
+
+    private void serveFollower(@NotNull Socket socket) {
+        Follower follower = new Follower(socket, new ArrayBlockingQueue<>(FOLLOWER_QUEUE_SIZE), Thread.currentThread());
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            long[] hello = FanOutProtocol.readHello(new DataInputStream(new BufferedInputStream(socket.getInputStream())));
+
+            // Queue the catch-up and register atomically, so that the follower doesn't miss or repeat any update
+            List<byte[]> catchUp = this.register(follower, hello[0], hello[1]);
+            if (catchUp == null) return; // Closed
+
+            OutputStream output = new BufferedOutputStream(socket.getOutputStream());
+            for (byte[] frame : catchUp) {
+                output.write(frame);
+            }
+            output.flush();
+
+            while (true) {
+                byte[] frame = follower.frames().take();
+                output.write(frame);
+                // Only flush once we've caught up, so that bursts of updates are batched
+                if (follower.frames().isEmpty()) output.flush();
+            }
+        } catch (IOException exception) {
+            LOGGER.debug("Config follower {} disconnected", socket.getRemoteSocketAddress(), exception);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (this) {
+                this.followers.remove(follower);
+            }
+        }
+    }
+
+    private synchronized @Nullable List<byte[]> register(@NotNull Follower follower, long epoch, long sequence) {
+        if (this.closed) return null;
+
+        List<byte[]> catchUp = new ArrayList<>();
+        long oldestLogged = this.sequence - this.log.size() + 1;
+        if (epoch == this.epoch && sequence >= oldestLogged - 1 && sequence <= this.sequence) {
+            // The follower only missed updates that are still in the log
+            int skip = (int) (sequence - oldestLogged + 1);
+            for (byte[] frame : this.log) {
+                if (skip-- > 0) continue;
+                catchUp.add(frame);
+            }
+            LOGGER.info("Config follower {} caught up with {} updates", follower.socket().getRemoteSocketAddress(), catchUp.size());
+        } else {
+            catchUp.add(FanOutProtocol.encodeSnapshot(this.epoch, this.sequence, this.files));
+            LOGGER.info("Config follower {} sent snapshot of {} configs", follower.socket().getRemoteSocketAddress(), this.files.size());
+        }
+
+        this.followers.add(follower);
+        return catchUp;
+    }
+
+    private synchronized void publish(byte type, @NotNull String fileName, @Nullable String fileContents) {
+        if (fileContents != null) {
+            this.files.put(fileName, fileContents);
+        } else {
+            this.files.remove(fileName);
+        }
+
+        byte[] frame = FanOutProtocol.encodeUpdate(type, ++this.sequence, fileName, fileContents);
+        this.log.addLast(frame);
+        if (this.log.size() > this.logSize) this.log.removeFirst();
+
+        for (Follower follower : Set.copyOf(this.followers)) {
+            if (follower.frames().offer(frame)) continue;
+
+            LOGGER.warn("Config follower {} fell too far behind, disconnecting", follower.socket().getRemoteSocketAddress());
+            this.disconnect(follower);
+        }
+    }
+
+    private void disconnect(@NotNull Follower follower) {
+        this.followers.remove(follower);
+        follower.writer().interrupt(); // Stops the writer waiting for frames, which closes the socket
+    }
+
+    /**
+     * Disconnects all followers, which will then reconnect and catch up. Intended for testing.
+     */
+    synchronized void disconnectFollowers() {
+        for (Follower follower : Set.copyOf(this.followers)) {
+            this.disconnect(follower);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            this.closed = true;
+            this.disconnectFollowers();
+        }
+        this.serverSocket.close();
+        this.source.close();
+    }
+
+    private record Follower(@NotNull Socket socket, @NotNull BlockingQueue<byte[]> frames, @NotNull Thread writer) {
+    }
+
+    private final class SourceConsumer implements ConfigWatcherConsumer {
+
+        @Override
+        public void onConfigCreate(@NotNull String fileName, @NotNull String fileContents) {
+            FanOutLeaderWatcher.this.publish(FanOutProtocol.CREATE, fileName, fileContents);
+            FanOutLeaderWatcher.this.consumer.onConfigCreate(fileName, fileContents);
+        }
+
+        @Override
+        public void onConfigModify(@NotNull String fileName, @NotNull String fileContents) {
+            FanOutLeaderWatcher.this.publish(FanOutProtocol.MODIFY, fileName, fileContents);
+            FanOutLeaderWatcher.this.consumer.onConfigModify(fileName, fileContents);
+        }
+
+        @Override
+        public void onConfigDelete(@NotNull String fileName) {
+            FanOutLeaderWatcher.this.publish(FanOutProtocol.DELETE, fileName, null);
+            FanOutLeaderWatcher.this.consumer.onConfigDelete(fileName);
+        }
+    }
+}
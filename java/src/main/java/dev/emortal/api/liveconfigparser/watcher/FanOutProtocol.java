@@ -0,0 +1,122 @@
+package dev.emortal.api.liveconfigparser.watcher;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * The wire format used between a {@link FanOutLeaderWatcher} and its {@link FanOutFollowerWatcher}s.
+ * <p>
+ * On connecting, a follower sends a hello: the magic number, the protocol version, and the epoch and sequence number
+ * of the last update it applied. The leader then replies with either the updates the follower missed, if it still
+ * has them, or a snapshot of every config, followed by every new update as it happens.
+ * <p>
+ * Every update has a sequence number, one higher than the previous update from the same leader. The epoch identifies
+ * the leader instance, as sequence numbers restart when a leader restarts.
+ * <p>
+ * All frames start with a type byte. Strings are written as a length-prefixed UTF-8 byte array, as configs may be
+ * larger than {@link DataOutputStream#writeUTF(String)} allows.
+ */
+final class FanOutProtocol {
+    static final int MAGIC = 0x4C434650; // "LCFP"
+    static final int VERSION = 1;
+
+    static final byte SNAPSHOT = 1; // epoch, sequence, count, (name, contents) * count
+    static final byte CREATE = 2; // sequence, name, contents
+    static final byte MODIFY = 3; // sequence, name, contents
+    static final byte DELETE = 4; // sequence, name
+
+    // Far larger than any config, but small enough that a corrupt length can't exhaust the heap
+    static final int MAX_STRING_BYTES = 64 * 1024 * 1024;
+
+    static final long NO_EPOCH = 0;
+    static final long NO_SEQUENCE = -1;
+
+    static void writeHello(@NotNull DataOutputStream output, long epoch, long sequence) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeLong(epoch);
+        output.writeLong(sequence);
+        output.flush();
+    }
+
+    /**
+     * Reads a hello, returning the epoch and sequence number the follower is at.
+     */
+    static long[] readHello(@NotNull DataInputStream input) throws IOException {
+        int magic = input.readInt();
+        int version = input.readInt();
+        if (magic != MAGIC || version != VERSION) {
+            throw new IOException("Unsupported fan-out protocol (magic: %x, version: %s)".formatted(magic, version));
+        }
+        return new long[]{input.readLong(), input.readLong()};
+    }
+
+    static byte[] encodeSnapshot(long epoch, long sequence, @NotNull Map<String, String> files) {
+        return encode(output -> {
+            output.writeByte(SNAPSHOT);
+            output.writeLong(epoch);
+            output.writeLong(sequence);
+            output.writeInt(files.size());
+            for (Map.Entry<String, String> entry : files.entrySet()) {
+                writeString(output, entry.getKey());
+                writeString(output, entry.getValue());
+            }
+        });
+    }
+
+    /**
+     * @param contents the new contents, or null for a delete
+     */
+    static byte[] encodeUpdate(byte type, long sequence, @NotNull String fileName, @Nullable String contents) {
+        return encode(output -> {
+            output.writeByte(type);
+            output.writeLong(sequence);
+            writeString(output, fileName);
+            if (contents != null) writeString(output, contents);
+        });
+    }
+
+    static void writeString(@NotNull DataOutputStream output, @NotNull String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    static @NotNull String readString(@NotNull DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0 || length > MAX_STRING_BYTES) {
+            throw new IOException("Invalid string length %s (maximum is %s)".formatted(length, MAX_STRING_BYTES));
+        }
+
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] encode(@NotNull FrameWriter writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            writer.write(output);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception); // Can't happen, we're writing to memory
+        }
+        return bytes.toByteArray();
+    }
+
+    @FunctionalInterface
+    private interface FrameWriter {
+
+        void write(@NotNull DataOutputStream output) throws IOException;
+    }
+
+    private FanOutProtocol() {
+    }
+}
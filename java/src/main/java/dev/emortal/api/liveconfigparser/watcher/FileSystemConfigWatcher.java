@@ -1,55 +1,133 @@
 package dev.emortal.api.liveconfigparser.watcher;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.StandardWatchEventKinds;
 import java.nio.file.WatchEvent;
 import java.nio.file.WatchKey;
-import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
+import java.util.Set;
 
+/**
+ * Watches one or more folders for config files.
+ * <p>
+ * Config files are named by their path relative to the folder they are in, so nested files are named like
+ * {@code minigames/parkourtag.json}. File names must be unique across all watched folders.
+ * <p>
+ * All watchers share a single watch service and thread, so any number of folders and collections can be watched
+ * without starting a thread for each.
+ */
 public final class FileSystemConfigWatcher implements ConfigWatcher {
     private static final Logger LOGGER = LoggerFactory.getLogger(FileSystemConfigWatcher.class);
 
-    private final @NotNull Path watchedFolder;
+    private final @NotNull List<Path> roots;
+    private final boolean recursive;
     private final @NotNull ConfigWatcherConsumer consumer;
 
-    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
-    private final WatchService watchService;
+    private final SharedWatchService watchService;
+    private final SharedWatchService.DirectoryListener listener = new DirectoryListener();
+
+    // All of these are guarded by this watcher's lock, as events are processed on the shared watch service thread
+    private final Map<Path, WatchedDirectory> watchedDirectories = new HashMap<>();
+    private final Map<String, KnownConfig> knownConfigs = new HashMap<>();
+    private boolean closed;
 
     public FileSystemConfigWatcher(@NotNull Path path, @NotNull ConfigWatcherConsumer consumer) throws IOException {
-        if (Files.notExists(path)) {
-            throw new IllegalStateException("%s folder not found".formatted(path.toAbsolutePath()));
+        this(List.of(path), false, consumer);
+    }
+
+    /**
+     * @param roots the folders to watch, which must be on the {@link FileSystems#getDefault() default} file system
+     * @param recursive whether to also watch subfolders, including ones created after the watcher is started.
+     *                  Hidden folders, such as the {@code ..data} folders that Kubernetes uses for ConfigMap volumes,
+     *                  and symbolic links to folders are not descended into.
+     * @param consumer the consumer to notify of config changes
+     */
+    public FileSystemConfigWatcher(@NotNull Collection<Path> roots, boolean recursive, @NotNull ConfigWatcherConsumer consumer) throws IOException {
+        for (Path root : roots) {
+            // The shared watch service belongs to the default file system, so it can't watch paths on any other
+            if (root.getFileSystem() != FileSystems.getDefault()) {
+                throw new IllegalArgumentException("%s is not on the default file system".formatted(root.toUri()));
+            }
+            if (Files.notExists(root)) {
+                throw new IllegalStateException("%s folder not found".formatted(root.toAbsolutePath()));
+            }
         }
 
+        // Normalized, so that files are named the same however the roots were spelled
+        this.roots = roots.stream().map(root -> root.toAbsolutePath().normalize()).toList();
+        this.recursive = recursive;
         this.consumer = consumer;
-        this.watchedFolder = path;
 
-        LOGGER.info("Watching config changes in '{}'", path.toAbsolutePath());
-        this.watchService = this.watchedFolder.getFileSystem().newWatchService();
-        path.register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.watchService = SharedWatchService.acquire();
+
+        // Hold the lock until all existing configs are loaded, so that events for them are only processed afterwards
+        synchronized (this) {
+            try {
+                for (Path root : this.roots) {
+                    LOGGER.info("Watching config changes in '{}'", root.toAbsolutePath());
+                    this.watchDirectory(root, root);
+                }
+
+                // Fire create events for all existing configs
+                for (Path root : this.roots) {
+                    this.loadConfigs(root, root, new HashSet<>());
+                }
+            } catch (IOException | RuntimeException exception) {
+                // Release the shared watch service, as nothing else will close a watcher that failed to start
+                this.close();
+                throw exception;
+            }
+        }
+    }
+
+    private void watchDirectory(@NotNull Path root, @NotNull Path directory) throws IOException {
+        if (this.watchedDirectories.containsKey(directory)) return;
 
-        // Fire create events for all existing configs
-        this.loadAllConfigs();
+        WatchKey key = this.watchService.register(directory, this.listener);
+        this.watchedDirectories.put(directory, new WatchedDirectory(root, key));
 
-        this.startUpdateListener();
+        if (!this.recursive) return;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, this::isWatchableDirectory)) {
+            for (Path subdirectory : stream) {
+                this.watchDirectory(root, subdirectory);
+            }
+        }
     }
 
-    private void loadAllConfigs() throws IOException {
-        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.watchedFolder, this::isConfigFile)) {
-            // We use a directory stream so that we can iterate in an imperative way, to be able to propagate the IOException
+    /**
+     * Loads all configs in the directory, and in its subdirectories if recursive. Subdirectories that aren't watched
+     * yet, e.g. ones created while events were lost, are registered before they are loaded.
+     *
+     * @param found the names of all configs that were found
+     */
+    private void loadConfigs(@NotNull Path root, @NotNull Path directory, @NotNull Set<String> found) throws IOException {
+        // We use a directory stream so that we can iterate in an imperative way, to be able to propagate the IOException
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
             for (Path path : stream) {
-                String contents = Files.readString(path);
-                this.consumer.onConfigCreate(path.getFileName().toString(), contents);
+                if (this.isConfigFile(path)) {
+                    this.onFileChanged(root, path);
+                    found.add(this.fileName(root, path));
+                } else if (this.recursive && this.isWatchableDirectory(path)) {
+                    this.watchDirectory(root, path);
+                    this.loadConfigs(root, path, found);
+                }
             }
         }
     }
@@ -58,55 +136,135 @@ public final class FileSystemConfigWatcher implements ConfigWatcher {
         return Files.isRegularFile(path) && path.getFileName().toString().endsWith(".json");
     }
 
-    private void startUpdateListener() {
-        this.scheduler.scheduleAtFixedRate(this::pollWatchEvents, 0, 500, TimeUnit.MILLISECONDS);
+    private boolean isWatchableDirectory(@NotNull Path path) {
+        return Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS) && !path.getFileName().toString().startsWith(".");
     }
 
-    private void pollWatchEvents() {
-        try {
-            WatchKey key = this.watchService.poll();
-            if (key == null) return; // No events received for us to process
+    private @NotNull String fileName(@NotNull Path root, @NotNull Path path) {
+        return root.relativize(path).toString().replace(File.separatorChar, '/');
+    }
 
-            List<WatchEvent<?>> events = key.pollEvents();
-            for (WatchEvent<?> event : events) {
-                @SuppressWarnings("unchecked") // This is fine, as the watch service was created from a path and is only watching paths
-                WatchEvent<Path> pathEvent = (WatchEvent<Path>) event;
+    private void onFileChanged(@NotNull Path root, @NotNull Path path) throws IOException {
+        String fileContents;
+        try {
+            fileContents = Files.readString(path);
+        } catch (NoSuchFileException exception) {
+            return; // Deleted before we got to it, we'll get a delete event for it next
+        }
 
-                this.processEvent(pathEvent);
-            }
+        String fileName = this.fileName(root, path);
+        byte[] hash = DigestUtils.md5(fileContents);
 
-            key.reset();
-        } catch (IOException exception) {
-            LOGGER.error("Failed to dispatch config file update", exception);
+        KnownConfig existing = this.knownConfigs.put(fileName, new KnownConfig(root, hash));
+        if (existing == null) {
+            this.consumer.onConfigCreate(fileName, fileContents);
+        } else if (!MessageDigest.isEqual(existing.hash(), hash)) {
+            this.consumer.onConfigModify(fileName, fileContents);
         }
+        // Otherwise the contents haven't changed, e.g. the file was just touched, so there's nothing to update
     }
 
-    private void processEvent(@NotNull WatchEvent<Path> event) throws IOException {
+    private void onFileDeleted(@NotNull String fileName) {
+        if (this.knownConfigs.remove(fileName) == null) return;
+        this.consumer.onConfigDelete(fileName);
+    }
+
+    private synchronized void processEvent(@NotNull Path directory, @NotNull WatchEvent<Path> event) throws IOException {
+        if (this.closed) return;
+
         WatchEvent.Kind<?> kind = event.kind();
-        if (kind == StandardWatchEventKinds.OVERFLOW) return;
+        if (kind == StandardWatchEventKinds.OVERFLOW) {
+            LOGGER.warn("Config file events were lost, reloading all configs");
+            this.reloadAll();
+            return;
+        }
 
-        Path path = this.watchedFolder.resolve(event.context());
-        if (!path.getFileName().toString().endsWith(".json")) {
-            LOGGER.warn("Non-json file '{}' in config directory was modified", path);
+        WatchedDirectory watched = this.watchedDirectories.get(directory);
+        if (watched == null) return; // We've stopped watching this directory
+        Path root = watched.root();
+
+        Path path = directory.resolve(event.context());
+        if (this.recursive && kind == StandardWatchEventKinds.ENTRY_CREATE && this.isWatchableDirectory(path)) {
+            // Register before loading, so that no files created in the meantime are missed
+            this.watchDirectory(root, path);
+            this.loadConfigs(root, path, new HashSet<>());
             return;
         }
 
-        switch (kind.name()) {
-            case "ENTRY_CREATE" -> {
-                String fileContents = Files.readString(path);
-                this.consumer.onConfigCreate(path.getFileName().toString(), fileContents);
+        if (!path.getFileName().toString().endsWith(".json")) {
+            if (!this.watchedDirectories.containsKey(path)) {
+                LOGGER.warn("Non-json file '{}' in config directory was modified", path);
             }
-            case "ENTRY_MODIFY" -> {
-                String fileContents = Files.readString(path);
-                this.consumer.onConfigModify(path.getFileName().toString(), fileContents);
+            return;
+        }
+
+        if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+            this.onFileDeleted(this.fileName(root, path));
+        } else if (this.isConfigFile(path)) {
+            this.onFileChanged(root, path);
+        }
+    }
+
+    private void reloadAll() throws IOException {
+        Set<String> found = new HashSet<>();
+        for (Path root : this.roots) {
+            if (this.recursive) this.watchDirectory(root, root);
+            this.loadConfigs(root, root, found);
+        }
+
+        for (String fileName : Set.copyOf(this.knownConfigs.keySet())) {
+            if (!found.contains(fileName)) this.onFileDeleted(fileName);
+        }
+    }
+
+    private synchronized void onDirectoryRemoved(@NotNull Path directory) {
+        WatchedDirectory watched = this.watchedDirectories.remove(directory);
+        if (this.closed || watched == null) return;
+
+        Path root = watched.root();
+        if (directory.equals(root)) {
+            LOGGER.warn("Config directory '{}' was removed", root.toAbsolutePath());
+        }
+
+        // Any configs left in the directory are gone with it
+        String prefix = directory.equals(root) ? "" : this.fileName(root, directory) + "/";
+        for (Map.Entry<String, KnownConfig> entry : Set.copyOf(this.knownConfigs.entrySet())) {
+            if (entry.getValue().root().equals(root) && entry.getKey().startsWith(prefix)) {
+                this.onFileDeleted(entry.getKey());
             }
-            case "ENTRY_DELETE" -> this.consumer.onConfigDelete(path.getFileName().toString());
         }
     }
 
     @Override
     public void close() throws IOException {
-        this.scheduler.shutdown();
-        this.watchService.close();
+        synchronized (this) {
+            if (this.closed) return;
+            this.closed = true;
+
+            for (Map.Entry<Path, WatchedDirectory> entry : this.watchedDirectories.entrySet()) {
+                this.watchService.unregister(entry.getValue().key(), entry.getKey(), this.listener);
+            }
+            this.watchedDirectories.clear();
+        }
+        SharedWatchService.release();
+    }
+
+    private record WatchedDirectory(@NotNull Path root, @NotNull WatchKey key) {
+    }
+
+    private record KnownConfig(@NotNull Path root, byte[] hash) {
+    }
+
+    private final class DirectoryListener implements SharedWatchService.DirectoryListener {
+
+        @Override
+        public void onEvent(@NotNull Path directory, @NotNull WatchEvent<Path> event) throws IOException {
+            FileSystemConfigWatcher.this.processEvent(directory, event);
+        }
+
+        @Override
+        public void onDirectoryRemoved(@NotNull Path directory) {
+            FileSystemConfigWatcher.this.onDirectoryRemoved(directory);
+        }
     }
 }
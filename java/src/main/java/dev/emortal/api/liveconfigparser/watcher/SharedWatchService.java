@@ -0,0 +1,151 @@
+package dev.emortal.api.liveconfigparser.watcher;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A single {@link WatchService} and dispatch thread shared by every {@link FileSystemConfigWatcher}.
+ * <p>
+ * The service is reference counted. It is created by the first {@link #acquire()} and closed, stopping its thread,
+ * when the last user {@link #release() releases} it.
+ */
+final class SharedWatchService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SharedWatchService.class);
+
+    private static SharedWatchService instance;
+    private static int references;
+
+    static synchronized @NotNull SharedWatchService acquire() throws IOException {
+        if (instance == null) {
+            instance = new SharedWatchService();
+        }
+        references++;
+        return instance;
+    }
+
+    static synchronized void release() throws IOException {
+        if (instance == null || --references > 0) return;
+
+        SharedWatchService service = instance;
+        instance = null;
+        service.watchService.close();
+    }
+
+    private final WatchService watchService;
+    private final Map<WatchKey, List<Registration>> registrations = new HashMap<>();
+
+    private SharedWatchService() throws IOException {
+        this.watchService = FileSystems.getDefault().newWatchService();
+
+        Thread thread = new Thread(this::run, "config-file-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Registers a listener for changes to the entries of a directory.
+     * Several listeners may watch the same directory, in which case they share the same key, even if they reach the
+     * directory through different paths. Each listener is given events with the path it registered.
+     */
+    synchronized @NotNull WatchKey register(@NotNull Path directory, @NotNull DirectoryListener listener) throws IOException {
+        WatchKey key = directory.register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.registrations.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(new Registration(directory, listener));
+        return key;
+    }
+
+    synchronized void unregister(@NotNull WatchKey key, @NotNull Path directory, @NotNull DirectoryListener listener) {
+        List<Registration> registrations = this.registrations.get(key);
+        if (registrations == null) return;
+
+        registrations.remove(new Registration(directory, listener));
+        if (registrations.isEmpty()) {
+            this.registrations.remove(key);
+            key.cancel();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = this.watchService.take();
+            } catch (ClosedWatchServiceException | InterruptedException exception) {
+                return;
+            }
+
+            List<Registration> registrations;
+            synchronized (this) {
+                registrations = this.registrations.get(key);
+            }
+
+            List<WatchEvent<?>> events = key.pollEvents();
+            if (registrations != null) {
+                this.dispatch(registrations, events);
+            }
+
+            if (!key.reset()) {
+                // The directory is no longer accessible, most likely because it was deleted
+                synchronized (this) {
+                    this.registrations.remove(key);
+                }
+                if (registrations != null) {
+                    for (Registration registration : registrations) {
+                        try {
+                            registration.listener().onDirectoryRemoved(registration.directory());
+                        } catch (Exception exception) {
+                            LOGGER.error("Failed to dispatch removal of config directory '{}'", registration.directory(), exception);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void dispatch(@NotNull List<Registration> registrations, @NotNull List<WatchEvent<?>> events) {
+        for (WatchEvent<?> event : events) {
+            @SuppressWarnings("unchecked") // This is fine, as the watch service was created from a path and is only watching paths
+            WatchEvent<Path> pathEvent = (WatchEvent<Path>) event;
+
+            for (Registration registration : registrations) {
+                try {
+                    registration.listener().onEvent(registration.directory(), pathEvent);
+                } catch (Exception exception) {
+                    // Don't let one broken listener stop the thread that every other watcher relies on
+                    LOGGER.error("Failed to dispatch config file update in '{}'", registration.directory(), exception);
+                }
+            }
+        }
+    }
+
+    /**
+     * A listener, and the path it watches the directory through.
+     */
+    private record Registration(@NotNull Path directory, @NotNull DirectoryListener listener) {
+    }
+
+    interface DirectoryListener {
+
+        /**
+         * @param directory the watched directory the event happened in
+         * @param event the event, or an {@link StandardWatchEventKinds#OVERFLOW} event if events were lost
+         */
+        void onEvent(@NotNull Path directory, @NotNull WatchEvent<Path> event) throws IOException;
+
+        void onDirectoryRemoved(@NotNull Path directory);
+    }
+}
@@ -0,0 +1,120 @@
+package dev.emortal.api.liveconfigparser.configs;
+
+import dev.emortal.api.liveconfigparser.parser.ConfigParser;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class ConfigCollectionTest {
+
+    @Test
+    public void testUnregisterListener() throws IOException {
+        try (TestCollection collection = new TestCollection()) {
+            List<String> updates = new ArrayList<>();
+            Consumer<ConfigUpdate> listener = update -> updates.add(update.getClass().getSimpleName());
+
+            // The same listener registered twice is called twice, and each registration only removes itself
+            ListenerRegistration first = collection.addUpdateListener("a", listener);
+            ListenerRegistration second = collection.addUpdateListener("a", listener);
+            collection.consumer.onConfigCreate("a.json", "a:1");
+            assertEquals(List.of("Create", "Create"), updates);
+
+            first.unregister();
+            first.unregister();
+            collection.consumer.onConfigModify("a.json", "a:2");
+            assertEquals(List.of("Create", "Create", "Modify"), updates);
+
+            second.unregister();
+            collection.consumer.onConfigDelete("a.json");
+            assertEquals(3, updates.size());
+
+            // Registering again after the last listener for the id was removed still works
+            ListenerRegistration third = collection.addUpdateListener("a", listener);
+            collection.consumer.onConfigCreate("a.json", "a:3");
+            assertEquals(4, updates.size());
+            third.unregister();
+        }
+    }
+
+    @Test
+    public void testUnregisterGlobalListener() throws IOException {
+        try (TestCollection collection = new TestCollection()) {
+            List<ConfigUpdate> updates = new ArrayList<>();
+            Consumer<ConfigUpdate> listener = updates::add;
+
+            ListenerRegistration first = collection.addGlobalUpdateListener(listener);
+            ListenerRegistration second = collection.addGlobalUpdateListener(listener);
+            collection.consumer.onConfigCreate("a.json", "a:1");
+            assertEquals(2, updates.size());
+
+            first.unregister();
+            first.unregister();
+            collection.consumer.onConfigModify("a.json", "a:2");
+            assertEquals(3, updates.size());
+
+            second.unregister();
+            collection.consumer.onConfigDelete("a.json");
+            assertEquals(3, updates.size());
+        }
+    }
+
+    @Test
+    public void testParserIndexesAreKeptPerFile() throws IOException {
+        List<String> parses = new ArrayList<>();
+        ConfigParser<TestCollection.TestConfig> parser = new ConfigParser<>() {
+            private int indexes;
+
+            @Override
+            public TestCollection.@NotNull TestConfig parse(@NotNull String config) {
+                return TestCollection.parse(config);
+            }
+
+            @Override
+            public @NotNull Object index(@NotNull String config) {
+                return "index " + ++this.indexes + " of " + config;
+            }
+
+            @Override
+            public TestCollection.@NotNull TestConfig parse(@NotNull String config, @Nullable Object index,
+                                                            TestCollection.@NotNull TestConfig previousConfig,
+                                                            @NotNull String previousConfigContents, @Nullable Object previousIndex) {
+                parses.add(previousConfigContents + " (" + previousIndex + ") -> " + config + " (" + index + ")");
+                return this.parse(config);
+            }
+        };
+
+        try (TestCollection collection = new TestCollection(parser)) {
+            // Created configs have no index, so the first modify is given none for the previous contents
+            collection.consumer.onConfigCreate("a.json", "a:1");
+            collection.consumer.onConfigCreate("b.json", "b:1");
+            collection.consumer.onConfigModify("a.json", "a:2");
+            collection.consumer.onConfigModify("b.json", "b:2");
+            collection.consumer.onConfigModify("a.json", "a:3");
+
+            // A failed parse keeps the previous contents and their index
+            assertThrows(RuntimeException.class, () -> collection.consumer.onConfigModify("a.json", "a:x"));
+            collection.consumer.onConfigModify("a.json", "a:4");
+
+            // A deleted config's index is dropped with it
+            collection.consumer.onConfigDelete("a.json");
+            collection.consumer.onConfigCreate("a.json", "a:5");
+            collection.consumer.onConfigModify("a.json", "a:6");
+
+            assertEquals(List.of(
+                    "a:1 (null) -> a:2 (index 1 of a:2)",
+                    "b:1 (null) -> b:2 (index 2 of b:2)",
+                    "a:2 (index 1 of a:2) -> a:3 (index 3 of a:3)",
+                    "a:3 (index 3 of a:3) -> a:x (index 4 of a:x)",
+                    "a:3 (index 3 of a:3) -> a:4 (index 5 of a:4)",
+                    "a:5 (null) -> a:6 (index 6 of a:6)"), parses);
+        }
+    }
+}
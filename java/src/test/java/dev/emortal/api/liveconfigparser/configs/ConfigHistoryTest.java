@@ -0,0 +1,88 @@
+package dev.emortal.api.liveconfigparser.configs;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class ConfigHistoryTest {
+
+    @Test
+    public void testPointInTimeLookup() {
+        ConfigHistory<TestConfig> history = new ConfigHistory<>(10, 100);
+        history.record(1, "a", new TestConfig("a", 1));
+        history.record(2, "b", new TestConfig("b", 1));
+        history.record(3, "a", new TestConfig("a", 2));
+        history.record(4, "b", null);
+
+        assertNull(history.getConfig("a", 0));
+        assertEquals(new TestConfig("a", 1), history.getConfig("a", 1));
+        assertEquals(new TestConfig("a", 1), history.getConfig("a", 2));
+        assertEquals(new TestConfig("a", 2), history.getConfig("a", 4));
+        assertEquals(new TestConfig("b", 1), history.getConfig("b", 3));
+        assertNull(history.getConfig("b", 4));
+
+        assertThrows(IllegalArgumentException.class, () -> history.getConfig("a", 5));
+    }
+
+    @Test
+    public void testEviction() {
+        ConfigHistory<TestConfig> history = new ConfigHistory<>(2, 100);
+        history.record(1, "a", new TestConfig("a", 1));
+        history.record(2, "b", new TestConfig("b", 1));
+        history.record(3, "b", new TestConfig("b", 2));
+
+        assertEquals(2, history.oldestGeneration());
+        assertThrows(IllegalArgumentException.class, () -> history.getConfig("a", 1));
+
+        // Unchanged configs stay visible in every retained generation
+        assertEquals(new TestConfig("a", 1), history.getConfig("a", 3));
+        assertEquals(new TestConfig("b", 1), history.getConfig("b", 2));
+    }
+
+    @Test
+    public void testPinning() {
+        ConfigHistory<TestConfig> history = new ConfigHistory<>(1, 100);
+        history.record(1, "a", new TestConfig("a", 1));
+
+        ConfigHistory.Pin pin = history.pin(1);
+        history.record(2, "a", new TestConfig("a", 2));
+        history.record(3, "a", new TestConfig("a", 3));
+
+        assertEquals(1, history.oldestGeneration());
+        assertEquals(new TestConfig("a", 1), history.getConfig("a", 1));
+
+        pin.close();
+        assertEquals(3, history.oldestGeneration());
+        assertThrows(IllegalArgumentException.class, () -> history.getConfig("a", 1));
+        assertThrows(IllegalArgumentException.class, () -> history.pin(2));
+    }
+
+    @Test
+    public void testPinExpires() {
+        ConfigHistory<TestConfig> history = new ConfigHistory<>(1, 3);
+        history.record(1, "a", new TestConfig("a", 1));
+
+        ConfigHistory.Pin pin = history.pin(1);
+        history.record(2, "a", new TestConfig("a", 2));
+        history.record(3, "a", new TestConfig("a", 3));
+        assertEquals(1, history.oldestGeneration());
+        assertFalse(pin.isExpired());
+
+        // The pin has held its generation for too long, so it is evicted anyway
+        history.record(4, "a", new TestConfig("a", 4));
+        assertEquals(4, history.oldestGeneration());
+        assertTrue(pin.isExpired());
+        assertThrows(IllegalArgumentException.class, () -> history.getConfig("a", 1));
+
+        pin.close();
+        assertEquals(4, history.oldestGeneration());
+    }
+
+    private record TestConfig(@NotNull String id, int version) implements Config {
+    }
+}
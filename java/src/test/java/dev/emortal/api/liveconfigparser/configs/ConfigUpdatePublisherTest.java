@@ -0,0 +1,143 @@
+package dev.emortal.api.liveconfigparser.configs;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class ConfigUpdatePublisherTest {
+
+    @Test
+    public void testPerIdDelivery() {
+        try (ConfigUpdatePublisher publisher = new ConfigUpdatePublisher(Runnable::run, 4)) {
+            RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+            publisher.forId("a").subscribe(subscriber);
+
+            publisher.publish("a", new ConfigUpdate.Create<>(new TestConfig("a")));
+            publisher.publish("b", new ConfigUpdate.Create<>(new TestConfig("b")));
+
+            assertEquals(List.of(new ConfigUpdate.Create<>(new TestConfig("a"))), subscriber.received);
+        }
+    }
+
+    @Test
+    public void testDemandIsRespected() {
+        try (ConfigUpdatePublisher publisher = new ConfigUpdatePublisher(Runnable::run, 4)) {
+            RecordingSubscriber subscriber = new RecordingSubscriber(1);
+            publisher.global().subscribe(subscriber);
+
+            publisher.publish("a", new ConfigUpdate.Create<>(new TestConfig("a")));
+            publisher.publish("b", new ConfigUpdate.Create<>(new TestConfig("b")));
+            assertEquals(1, subscriber.received.size());
+
+            subscriber.subscription.request(1);
+            assertEquals(2, subscriber.received.size());
+        }
+    }
+
+    @Test
+    public void testCancelledSubscriberStopsReceiving() {
+        try (ConfigUpdatePublisher publisher = new ConfigUpdatePublisher(Runnable::run, 4)) {
+            RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+            publisher.forId("a").subscribe(subscriber);
+            subscriber.subscription.cancel();
+
+            publisher.publish("a", new ConfigUpdate.Create<>(new TestConfig("a")));
+            assertTrue(subscriber.received.isEmpty());
+        }
+    }
+
+    @Test
+    public void testPublisherRemovedOnCancel() {
+        try (ConfigUpdatePublisher publisher = new ConfigUpdatePublisher(Runnable::run, 4)) {
+            RecordingSubscriber first = new RecordingSubscriber(Long.MAX_VALUE);
+            RecordingSubscriber second = new RecordingSubscriber(Long.MAX_VALUE);
+            publisher.forId("a").subscribe(first);
+            publisher.forId("a").subscribe(second);
+            assertEquals(1, publisher.idPublisherCount());
+
+            // Removed as soon as the last subscriber cancels, without waiting for another update
+            first.subscription.cancel();
+            assertEquals(1, publisher.idPublisherCount());
+            second.subscription.cancel();
+            assertEquals(0, publisher.idPublisherCount());
+
+            RecordingSubscriber third = new RecordingSubscriber(Long.MAX_VALUE);
+            publisher.forId("a").subscribe(third);
+            publisher.publish("a", new ConfigUpdate.Create<>(new TestConfig("a")));
+            assertEquals(1, third.received.size());
+        }
+    }
+
+    @Test
+    public void testSubscribeFromOnNext() {
+        try (ConfigUpdatePublisher publisher = new ConfigUpdatePublisher(Runnable::run, 4)) {
+            RecordingSubscriber inner = new RecordingSubscriber(Long.MAX_VALUE);
+            RecordingSubscriber outer = new RecordingSubscriber(Long.MAX_VALUE) {
+                private int count;
+
+                @Override
+                public void onNext(@NotNull ConfigUpdate item) {
+                    super.onNext(item);
+                    if (this.count++ == 0) publisher.forId("a").subscribe(inner);
+                }
+            };
+            publisher.forId("a").subscribe(outer);
+
+            ConfigUpdate second = new ConfigUpdate.Delete<>(new TestConfig("a"));
+            publisher.publish("a", new ConfigUpdate.Create<>(new TestConfig("a")));
+            publisher.publish("a", second);
+            assertEquals(2, outer.received.size());
+            assertEquals(second, inner.received.get(inner.received.size() - 1));
+        }
+    }
+
+    @Test
+    public void testForIdAfterCloseIsRejected() {
+        ConfigUpdatePublisher publisher = new ConfigUpdatePublisher(Runnable::run, 4);
+        Flow.Publisher<ConfigUpdate> beforeClose = publisher.forId("a");
+        publisher.close();
+
+        assertThrows(IllegalStateException.class, () -> publisher.forId("a"));
+        assertThrows(IllegalStateException.class, () -> beforeClose.subscribe(new RecordingSubscriber(1)));
+    }
+
+    private static class RecordingSubscriber implements Flow.Subscriber<ConfigUpdate> {
+
+        private final long initialDemand;
+        private final List<ConfigUpdate> received = new ArrayList<>();
+        private Flow.Subscription subscription;
+
+        RecordingSubscriber(long initialDemand) {
+            this.initialDemand = initialDemand;
+        }
+
+        @Override
+        public void onSubscribe(@NotNull Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(this.initialDemand);
+        }
+
+        @Override
+        public void onNext(@NotNull ConfigUpdate item) {
+            this.received.add(item);
+        }
+
+        @Override
+        public void onError(@NotNull Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    private record TestConfig(@NotNull String id) implements Config {
+    }
+}
@@ -0,0 +1,94 @@
+package dev.emortal.api.liveconfigparser.configs;
+
+import dev.emortal.api.liveconfigparser.configs.TestCollection.TestConfig;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public final class DerivedViewTest {
+
+    @Test
+    public void testRecomputedOnlyWhenDependencyChanges() throws IOException {
+        try (TestCollection collection = new TestCollection()) {
+            collection.consumer.onConfigCreate("a.json", "a:1");
+            collection.consumer.onConfigCreate("b.json", "b:1");
+
+            AtomicInteger computations = new AtomicInteger();
+            DerivedView<List<String>> view = collection.registerView(configs -> {
+                computations.incrementAndGet();
+                return configs.stream().map(TestConfig::toString).sorted().toList();
+            }, id -> id.equals("a"));
+
+            // Computed lazily, and then shared
+            assertEquals(0, computations.get());
+            List<String> value = view.get();
+            assertEquals(List.of("a:1", "b:1"), value);
+            assertSame(value, view.get());
+            assertEquals(collection.generation(), view.generation());
+            assertEquals(1, computations.get());
+
+            // b isn't a dependency, so the view keeps its value
+            collection.consumer.onConfigModify("b.json", "b:2");
+            assertSame(value, view.get());
+
+            // A modify to an equal config can't change the view
+            collection.consumer.onConfigModify("a.json", "a:01");
+            assertSame(value, view.get());
+
+            collection.consumer.onConfigModify("a.json", "a:2");
+            assertEquals(List.of("a:2", "b:2"), view.get());
+            assertEquals(2, computations.get());
+
+            collection.consumer.onConfigDelete("a.json");
+            assertEquals(List.of("b:2"), view.get());
+            assertEquals(3, computations.get());
+
+            // Once closed, the view is no longer invalidated
+            view.close();
+            collection.consumer.onConfigCreate("a.json", "a:3");
+            assertEquals(List.of("b:2"), view.get());
+            assertEquals(3, computations.get());
+        }
+    }
+
+    @Test
+    public void testValueIsComputedFromSnapshot() throws IOException {
+        try (TestCollection collection = new TestCollection()) {
+            collection.consumer.onConfigCreate("a.json", "a:1");
+
+            // The view keeps the configs it was given, which must not change with the collection
+            DerivedView<Collection<TestConfig>> view = collection.registerView(configs -> configs, id -> id.equals("a"));
+            DerivedView.Snapshot<Collection<TestConfig>> snapshot = view.snapshot();
+            assertEquals(List.of(new TestConfig("a", 1)), List.copyOf(snapshot.value()));
+            assertEquals(collection.generation(), snapshot.generation());
+
+            collection.consumer.onConfigCreate("b.json", "b:1");
+            assertSame(snapshot, view.snapshot());
+            assertEquals(List.of(new TestConfig("a", 1)), List.copyOf(view.get()));
+            assertEquals(collection.generation() - 1, view.generation());
+        }
+    }
+
+    @Test
+    public void testListenersSeeNewValue() throws IOException {
+        try (TestCollection collection = new TestCollection()) {
+            DerivedView<TestConfig> latest = collection.registerView(configs -> configs.stream()
+                    .max(Comparator.comparingInt(TestConfig::version))
+                    .orElse(null));
+            assertEquals(null, latest.get());
+
+            AtomicInteger seenVersion = new AtomicInteger();
+            collection.addGlobalUpdateListener(update -> seenVersion.set(latest.get().version()));
+
+            collection.consumer.onConfigCreate("a.json", "a:5");
+            assertEquals(5, seenVersion.get());
+        }
+    }
+}
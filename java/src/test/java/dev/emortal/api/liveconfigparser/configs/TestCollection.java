@@ -0,0 +1,45 @@
+package dev.emortal.api.liveconfigparser.configs;
+
+import dev.emortal.api.liveconfigparser.parser.ConfigParser;
+import dev.emortal.api.liveconfigparser.watcher.ConfigWatcherConsumer;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+/**
+ * A collection of configs written as {@code <id>:<version>}, with updates applied through {@link #consumer} rather
+ * than a real watcher, for collection tests.
+ */
+final class TestCollection extends ConfigCollection<TestCollection.TestConfig> {
+    final ConfigWatcherConsumer consumer;
+
+    TestCollection() throws IOException {
+        this(TestCollection::parse);
+    }
+
+    TestCollection(@NotNull ConfigParser<TestConfig> parser) throws IOException {
+        this(parser, new ConfigWatcherConsumer[1]);
+    }
+
+    private TestCollection(ConfigParser<TestConfig> parser, ConfigWatcherConsumer[] consumer) throws IOException {
+        super(parser, watcherConsumer -> {
+            consumer[0] = watcherConsumer;
+            return () -> {
+            };
+        });
+        this.consumer = consumer[0];
+    }
+
+    static @NotNull TestConfig parse(@NotNull String config) {
+        String[] parts = config.split(":");
+        return new TestConfig(parts[0], Integer.parseInt(parts[1]));
+    }
+
+    record TestConfig(@NotNull String id, int version) implements Config {
+
+        @Override
+        public String toString() {
+            return this.id + ":" + this.version;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package dev.emortal.api.liveconfigparser.configs.gamemode;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class GameModeCollectionTest {
+    private static final Path TEST_FILES_PATH = Path.of("../testfiles");
+
+    @Test
+    public void testTable() throws IOException {
+        try (GameModeCollection collection = GameModeCollection.fromLocalPath(TEST_FILES_PATH)) {
+            int lobby = collection.handle("lobby");
+            int parkourTag = collection.handle("parkourtag");
+            assertNotEquals(lobby, parkourTag);
+            assertEquals(-1, collection.handle("unknown"));
+
+            GameModeTable table = collection.table();
+            assertSame(table, collection.table());
+            assertEquals(collection.generation(), table.generation());
+
+            assertTrue(table.isPresent(lobby));
+            assertFalse(table.isPresent(table.size()));
+
+            assertEquals(1, table.minPlayers(lobby));
+            assertEquals(100, table.maxPlayers(lobby));
+            assertEquals(1, table.partyMinSize(lobby));
+            assertEquals(500_000_000L, table.matchmakerRate(lobby));
+
+            assertEquals(2, table.minPlayers(parkourTag));
+            assertEquals(12, table.maxPlayers(parkourTag));
+            assertEquals(100, table.priority(parkourTag));
+            assertEquals(2_000_000_000L, table.matchmakerRate(parkourTag));
+        }
+    }
+
+    @Test
+    public void testViews() throws IOException {
+        try (GameModeCollection collection = GameModeCollection.fromLocalPath(TEST_FILES_PATH)) {
+            List<GameModeConfig> enabledGameModes = collection.enabledGameModes();
+            assertEquals(List.of("lobby", "parkourtag"), enabledGameModes.stream().map(GameModeConfig::id).toList());
+            assertSame(enabledGameModes, collection.enabledGameModes());
+
+            assertEquals(Set.of("parkourtag"), collection.enabledMaps().keySet());
+            assertEquals("city", collection.enabledMaps().get("parkourtag").get(0).id());
+
+            assertEquals(Set.of("lobby", "parkourtag"), collection.fleetNames());
+        }
+    }
+}
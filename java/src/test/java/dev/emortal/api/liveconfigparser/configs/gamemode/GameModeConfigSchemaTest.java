@@ -0,0 +1,151 @@
+package dev.emortal.api.liveconfigparser.configs.gamemode;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import dev.emortal.api.liveconfigparser.parser.FieldTable;
+import dev.emortal.api.liveconfigparser.parser.SchemaReport;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class GameModeConfigSchemaTest {
+    private static final Path TEST_FILES_PATH = Path.of("../testfiles");
+
+    @Test
+    public void testFieldLookup() {
+        FieldTable fields = GameModeConfigSchema.FIELDS;
+        for (int i = 0; i < fields.size(); i++) {
+            assertEquals(i, fields.indexOf(fields.name(i)));
+        }
+        assertEquals(-1, fields.indexOf("unknown"));
+        assertEquals(-1, fields.indexOf("Id"));
+    }
+
+    @Test
+    public void testFieldHashCollisionsAreRejected() {
+        // "Aa" and "BB" have the same hash code, so no multiplier can put them in different slots
+        FieldTable.Builder builder = FieldTable.builder().field(0, "Aa", FieldTable.Presence.OPTIONAL);
+        assertThrows(IllegalArgumentException.class, () -> builder.field(1, "BB", FieldTable.Presence.OPTIONAL));
+        assertThrows(IllegalArgumentException.class, () -> builder.field(1, "Aa", FieldTable.Presence.OPTIONAL));
+    }
+
+    @Test
+    public void testReadTestFiles() throws IOException {
+        SchemaReport report = new SchemaReport();
+        GameModeConfig parkourTag = read(Files.readString(TEST_FILES_PATH.resolve("parkourtag.json")), report);
+        assertTrue(report.isEmpty(), report.toString());
+
+        assertEquals("parkourtag", parkourTag.id());
+        assertEquals(12, parkourTag.partyRestrictions().maxSize());
+        assertEquals(2, parkourTag.displayItem().lore().size());
+        assertEquals(List.of("city"), List.copyOf(parkourTag.maps().keySet()));
+        assertEquals(GameModeConfig.MatchmakerInfo.MatchMethod.COUNTDOWN, parkourTag.matchmakerInfo().matchMethod());
+
+        // The city map's display item has no lore, which is optional
+        assertEquals(List.of(), parkourTag.maps().get("city").displayItem().lore());
+    }
+
+    @Test
+    public void testUnknownAndMissingFields() throws IOException {
+        SchemaReport report = new SchemaReport();
+        GameModeConfig config = read("""
+                {
+                  "id": "test",
+                  "fleetName": "test",
+                  "newField": {"nested": [1, 2, 3]},
+                  "displayNpc": null,
+                  "partyRestrictions": {"minSize": 2, "maxPlayers": 4},
+                  "matchmakerInfo": {"matchMethod": "INSTANT", "selectMethod": "AVAILABLE", "rate": 100}
+                }
+                """, report);
+
+        assertEquals("test", config.id());
+        assertEquals("", config.friendlyName());
+        assertNull(config.displayNpc());
+        assertEquals(2, config.partyRestrictions().minSize());
+        assertEquals(100, config.matchmakerInfo().rate());
+
+        assertEquals(List.of("newField", "partyRestrictions.maxPlayers"), report.unknownFields());
+        assertEquals(List.of("enabled", "friendlyName", "activityNoun", "minPlayers", "maxPlayers"), report.missingFields());
+    }
+
+    @Test
+    public void testMissingRequiredField() {
+        assertThrows(JsonParseException.class, () -> read("""
+                {"id": "test", "fleetName": "test"}
+                """, new SchemaReport()));
+    }
+
+    @Test
+    public void testUnknownEnumValue() throws IOException {
+        SchemaReport report = new SchemaReport();
+        GameModeConfig config = read("""
+                {"id": "test", "fleetName": "test", "matchmakerInfo": {"matchMethod": "SOMETIMES", "selectMethod": "AVAILABLE"}}
+                """, report);
+
+        assertNull(config.matchmakerInfo().matchMethod());
+        assertEquals(GameModeConfig.MatchmakerInfo.SelectMethod.AVAILABLE, config.matchmakerInfo().selectMethod());
+        assertEquals(List.of("matchmakerInfo.matchMethod=SOMETIMES"), report.unknownValues());
+    }
+
+    @Test
+    public void testReadChangesReusesUnchangedValues() throws IOException {
+        String contents = Files.readString(TEST_FILES_PATH.resolve("parkourtag.json"));
+        GameModeConfig previous = GameModeConfigSchema.read(contents, new SchemaReport());
+
+        String changed = contents.replace("\"maxPlayers\": 12", "\"maxPlayers\": 16");
+        GameModeConfig config = GameModeConfigSchema.readChanges(changed, previous, contents, new SchemaReport());
+        assertEquals(GameModeConfigSchema.read(changed, new SchemaReport()), config);
+        assertEquals(16, config.maxPlayers());
+        assertSame(previous.displayNpc(), config.displayNpc());
+        assertSame(previous.maps(), config.maps());
+
+        // The members of the previous contents can be kept from reading them, rather than found again
+        GameModeConfig withKeptMembers = GameModeConfigSchema.readChanges(changed, GameModeConfigSchema.members(changed),
+                previous, contents, GameModeConfigSchema.members(contents), new SchemaReport());
+        assertEquals(config, withKeptMembers);
+        assertSame(previous.displayNpc(), withKeptMembers.displayNpc());
+
+        // Only the changed map is decoded again
+        String withNewMap = changed.replace("\"maps\": {", "\"maps\": {\n    \"forest\": {\"id\": \"forest\", \"enabled\": false},");
+        SchemaReport report = new SchemaReport();
+        GameModeConfig withForest = GameModeConfigSchema.readChanges(withNewMap, config, changed, report);
+        assertEquals(GameModeConfigSchema.read(withNewMap, new SchemaReport()), withForest);
+        assertEquals(List.of("forest", "city"), List.copyOf(withForest.maps().keySet()));
+        assertSame(config.maps().get("city"), withForest.maps().get("city"));
+        assertEquals(List.of("maps.forest.friendlyName", "maps.forest.displayItem"), report.missingFields());
+
+        // Removed fields go back to their defaults
+        String withoutPriority = changed.replace("\"priority\": 100,\n\n  \"friendlyName\"", "\"friendlyName\"");
+        assertEquals(0, GameModeConfigSchema.readChanges(withoutPriority, config, changed, new SchemaReport()).priority());
+    }
+
+    @Test
+    public void testReadChangesFallsBackToFullRead() throws IOException {
+        String contents = Files.readString(TEST_FILES_PATH.resolve("lobby.json"));
+        GameModeConfig previous = GameModeConfigSchema.read(contents, new SchemaReport());
+
+        // Comments can't be scanned, so the whole config is read
+        String withComment = contents.replace("\"enabled\": true,", "// Disabled for maintenance\n  \"enabled\": false,");
+        assertFalse(GameModeConfigSchema.readChanges(withComment, previous, contents, new SchemaReport()).enabled());
+
+        assertThrows(IOException.class, () -> GameModeConfigSchema.readChanges(contents + "}", previous, contents, new SchemaReport()));
+    }
+
+    private static GameModeConfig read(String content, SchemaReport report) throws IOException {
+        try (JsonReader reader = new JsonReader(new StringReader(content))) {
+            return GameModeConfigSchema.read(reader, report);
+        }
+    }
+}
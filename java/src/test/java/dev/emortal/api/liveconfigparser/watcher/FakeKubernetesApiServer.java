@@ -0,0 +1,389 @@
+package dev.emortal.api.liveconfigparser.watcher;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An in-process stand-in for the ConfigMap list and watch endpoints of the Kubernetes API server.
+ * <p>
+ * Point an {@link io.kubernetes.client.openapi.ApiClient} at {@link #url()} to use it. ConfigMaps are changed through
+ * {@link #putConfigMap(String, String, Map)} and {@link #deleteConfigMap(String, String)}, and failures can be
+ * scripted with {@link #failRequests(int, int)}, {@link #disconnectWatches()}, {@link #updateWhileDisconnected(Runnable)}
+ * and {@link #expireHistory()}.
+ * <p>
+ * Like the real API server, watches end after the {@code timeoutSeconds} the client asked for, capped by
+ * {@link #limitWatchTimeout(Duration)}, and only the last {@link #limitHistory(int)} events are kept, so that watches
+ * resuming from an older resource version get 410 Gone.
+ */
+public final class FakeKubernetesApiServer implements AutoCloseable {
+    public static final String THREAD_NAME_PREFIX = "fake-kube-api-";
+
+    private static final Gson GSON = new Gson();
+    private static final Pattern CONFIG_MAPS_PATH = Pattern.compile("/api/v1/namespaces/([^/]+)/configmaps");
+    // Sent to a watch stream to end it
+    private static final String END_OF_STREAM = "";
+    private static final int DEFAULT_HISTORY_LIMIT = 1000;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    // All state is guarded by this server's lock
+    private final Map<String, JsonObject> configMaps = new HashMap<>();
+    private final Deque<WatchEvent> history = new ArrayDeque<>();
+    private final Set<WatchStream> watchStreams = ConcurrentHashMap.newKeySet();
+    private long resourceVersion = 1;
+    private long oldestRetainedVersion = 1;
+    private int historyLimit = DEFAULT_HISTORY_LIMIT;
+
+    private final AtomicInteger failuresRemaining = new AtomicInteger();
+    private volatile int failureCode;
+    private volatile @Nullable Duration maxWatchTimeout;
+    private final AtomicInteger listRequests = new AtomicInteger();
+    private final AtomicInteger watchRequests = new AtomicInteger();
+
+    public FakeKubernetesApiServer() throws IOException {
+        AtomicInteger threadId = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    public @NotNull String url() {
+        InetSocketAddress address = this.server.getAddress();
+        return "http://" + address.getHostString() + ":" + address.getPort();
+    }
+
+    public synchronized void putConfigMap(@NotNull String namespace, @NotNull String name, @NotNull Map<String, String> data) {
+        String key = namespace + "/" + name;
+        String type = this.configMaps.containsKey(key) ? "MODIFIED" : "ADDED";
+
+        JsonObject configMap = configMap(namespace, name, data, ++this.resourceVersion);
+        this.configMaps.put(key, configMap);
+        this.publish(new WatchEvent(namespace, name, this.resourceVersion, type, configMap));
+    }
+
+    public synchronized void deleteConfigMap(@NotNull String namespace, @NotNull String name) {
+        JsonObject configMap = this.configMaps.remove(namespace + "/" + name);
+        if (configMap == null) return;
+
+        configMap = configMap.deepCopy();
+        configMap.getAsJsonObject("metadata").addProperty("resourceVersion", String.valueOf(++this.resourceVersion));
+        this.publish(new WatchEvent(namespace, name, this.resourceVersion, "DELETED", configMap));
+    }
+
+    /**
+     * Makes the next requests fail with the given HTTP status code, such as 404 for a missing namespace.
+     */
+    public void failRequests(int statusCode, int count) {
+        this.failureCode = statusCode;
+        this.failuresRemaining.set(count);
+    }
+
+    /**
+     * Closes all open watch streams, as if the connection to the API server was lost.
+     */
+    public void disconnectWatches() {
+        for (WatchStream stream : this.watchStreams) {
+            stream.lines().add(END_OF_STREAM);
+        }
+    }
+
+    /**
+     * Closes all open watch streams and runs the given updates before any watch can reconnect, so that resuming watches
+     * see all of them at once, or 410 Gone if they are no longer in the history.
+     */
+    public synchronized void updateWhileDisconnected(@NotNull Runnable updates) {
+        // Watches replay under this lock, so they can't reconnect until the updates are done
+        this.disconnectWatches();
+        updates.run();
+    }
+
+    /**
+     * Keeps only the given number of most recent events for watches to resume from.
+     */
+    public synchronized void limitHistory(int limit) {
+        this.historyLimit = limit;
+        this.trimHistory();
+    }
+
+    /**
+     * Ends watches after the given time, even if the client asked for a longer timeout.
+     */
+    public void limitWatchTimeout(@NotNull Duration timeout) {
+        this.maxWatchTimeout = timeout;
+    }
+
+    /**
+     * Forgets all history, so that open watches and watches resuming from an old resource version get 410 Gone.
+     */
+    public synchronized void expireHistory() {
+        this.history.clear();
+        this.oldestRetainedVersion = this.resourceVersion + 1;
+
+        String gone = goneEvent();
+        for (WatchStream stream : this.watchStreams) {
+            stream.lines().add(gone);
+            stream.lines().add(END_OF_STREAM);
+        }
+    }
+
+    public int listRequests() {
+        return this.listRequests.get();
+    }
+
+    public int watchRequests() {
+        return this.watchRequests.get();
+    }
+
+    private void publish(@NotNull WatchEvent event) {
+        this.history.addLast(event);
+        this.trimHistory();
+
+        String line = event.toLine();
+        for (WatchStream stream : this.watchStreams) {
+            if (stream.matches(event)) stream.lines().add(line);
+        }
+    }
+
+    private void trimHistory() {
+        while (this.history.size() > this.historyLimit) {
+            this.history.removeFirst();
+            WatchEvent oldest = this.history.peekFirst();
+            this.oldestRetainedVersion = oldest != null ? oldest.resourceVersion() : this.resourceVersion + 1;
+        }
+    }
+
+    private void handle(@NotNull HttpExchange exchange) throws IOException {
+        try (exchange) {
+            Matcher matcher = CONFIG_MAPS_PATH.matcher(exchange.getRequestURI().getPath());
+            if (!exchange.getRequestMethod().equals("GET") || !matcher.matches()) {
+                this.respond(exchange, HttpURLConnection.HTTP_NOT_FOUND, status(HttpURLConnection.HTTP_NOT_FOUND, "NotFound", "unknown path"));
+                return;
+            }
+
+            if (this.failuresRemaining.getAndUpdate(remaining -> Math.max(0, remaining - 1)) > 0) {
+                int code = this.failureCode;
+                this.respond(exchange, code, status(code, "Scripted", "scripted failure"));
+                return;
+            }
+
+            String namespace = matcher.group(1);
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String name = parseNameSelector(query.get("fieldSelector"));
+
+            if (Boolean.parseBoolean(query.get("watch"))) {
+                this.watchRequests.incrementAndGet();
+                this.watch(exchange, namespace, name, parseVersion(query.get("resourceVersion")), this.watchTimeout(query.get("timeoutSeconds")));
+            } else {
+                this.listRequests.incrementAndGet();
+                this.respond(exchange, HttpURLConnection.HTTP_OK, this.list(namespace, name));
+            }
+        }
+    }
+
+    private synchronized @NotNull JsonObject list(@NotNull String namespace, @Nullable String name) {
+        JsonArray items = new JsonArray();
+        for (JsonObject configMap : this.configMaps.values()) {
+            JsonObject metadata = configMap.getAsJsonObject("metadata");
+            if (!metadata.get("namespace").getAsString().equals(namespace)) continue;
+            if (name != null && !metadata.get("name").getAsString().equals(name)) continue;
+            items.add(configMap);
+        }
+
+        JsonObject metadata = new JsonObject();
+        metadata.addProperty("resourceVersion", String.valueOf(this.resourceVersion));
+
+        JsonObject list = new JsonObject();
+        list.addProperty("apiVersion", "v1");
+        list.addProperty("kind", "ConfigMapList");
+        list.add("metadata", metadata);
+        list.add("items", items);
+        return list;
+    }
+
+    private @Nullable Duration watchTimeout(@Nullable String timeoutSeconds) {
+        Duration timeout = timeoutSeconds == null || timeoutSeconds.isEmpty() ? null : Duration.ofSeconds(Long.parseLong(timeoutSeconds));
+        Duration max = this.maxWatchTimeout;
+        if (max == null) return timeout;
+        return timeout == null || max.compareTo(timeout) < 0 ? max : timeout;
+    }
+
+    private void watch(@NotNull HttpExchange exchange, @NotNull String namespace, @Nullable String name, long fromVersion,
+                       @Nullable Duration timeout) throws IOException {
+        WatchStream stream = new WatchStream(namespace, name, new LinkedBlockingQueue<>());
+
+        // Replay and register atomically, so that no event is missed or sent twice
+        synchronized (this) {
+            if (fromVersion != 0 && fromVersion + 1 < this.oldestRetainedVersion) {
+                stream.lines().add(goneEvent());
+                stream.lines().add(END_OF_STREAM);
+            } else {
+                for (WatchEvent event : this.history) {
+                    if (event.resourceVersion() > fromVersion && stream.matches(event)) stream.lines().add(event.toLine());
+                }
+                this.watchStreams.add(stream);
+            }
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, 0); // Chunked, as the stream is open-ended
+
+        OutputStream output = exchange.getResponseBody();
+        long deadline = timeout != null ? System.nanoTime() + timeout.toNanos() : Long.MAX_VALUE;
+        try {
+            while (true) {
+                // The stream ends normally on timeout, and the client resumes from the last version it saw
+                String line = timeout != null ? stream.lines().poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS) : stream.lines().take();
+                if (line == null || line.equals(END_OF_STREAM)) break;
+
+                output.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+                output.flush();
+            }
+        } catch (IOException exception) {
+            // The client went away
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.watchStreams.remove(stream);
+        }
+    }
+
+    private void respond(@NotNull HttpExchange exchange, int code, @NotNull JsonObject body) throws IOException {
+        byte[] bytes = GSON.toJson(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(code, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    @Override
+    public void close() {
+        this.disconnectWatches();
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    private static @NotNull JsonObject configMap(@NotNull String namespace, @NotNull String name, @NotNull Map<String, String> data,
+                                                 long resourceVersion) {
+        JsonObject metadata = new JsonObject();
+        metadata.addProperty("name", name);
+        metadata.addProperty("namespace", namespace);
+        metadata.addProperty("resourceVersion", String.valueOf(resourceVersion));
+
+        JsonObject dataObject = new JsonObject();
+        data.forEach(dataObject::addProperty);
+
+        JsonObject configMap = new JsonObject();
+        configMap.addProperty("apiVersion", "v1");
+        configMap.addProperty("kind", "ConfigMap");
+        configMap.add("metadata", metadata);
+        configMap.add("data", dataObject);
+        return configMap;
+    }
+
+    private static @NotNull JsonObject status(int code, @NotNull String reason, @NotNull String message) {
+        JsonObject status = new JsonObject();
+        status.addProperty("apiVersion", "v1");
+        status.addProperty("kind", "Status");
+        status.addProperty("status", "Failure");
+        status.addProperty("reason", reason);
+        status.addProperty("message", message);
+        status.addProperty("code", code);
+        return status;
+    }
+
+    private static @NotNull String goneEvent() {
+        JsonObject event = new JsonObject();
+        event.addProperty("type", "ERROR");
+        event.add("object", status(HttpURLConnection.HTTP_GONE, "Expired", "too old resource version"));
+        return GSON.toJson(event);
+    }
+
+    private static @NotNull Map<String, String> parseQuery(@Nullable String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) return query;
+
+        for (String parameter : rawQuery.split("&")) {
+            int separator = parameter.indexOf('=');
+            if (separator == -1) continue;
+            query.put(URLDecoder.decode(parameter.substring(0, separator), StandardCharsets.UTF_8),
+                    URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    private static @Nullable String parseNameSelector(@Nullable String fieldSelector) {
+        if (fieldSelector == null || !fieldSelector.startsWith("metadata.name=")) return null;
+        return fieldSelector.substring("metadata.name=".length());
+    }
+
+    private static long parseVersion(@Nullable String resourceVersion) {
+        if (resourceVersion == null || resourceVersion.isEmpty()) return 0;
+        return Long.parseLong(resourceVersion);
+    }
+
+    private record WatchEvent(@NotNull String namespace, @NotNull String name, long resourceVersion, @NotNull String type,
+                              @NotNull JsonObject object) {
+
+        @NotNull String toLine() {
+            JsonObject event = new JsonObject();
+            event.addProperty("type", this.type);
+            event.add("object", this.object);
+            return GSON.toJson(event);
+        }
+    }
+
+    private record WatchStream(@NotNull String namespace, @Nullable String name, @NotNull BlockingQueue<String> lines) {
+
+        boolean matches(@NotNull WatchEvent event) {
+            return event.namespace().equals(this.namespace) && (this.name == null || event.name().equals(this.name));
+        }
+    }
+
+    /**
+     * @return a copy of the given data with one entry changed, for scripting updates
+     */
+    public static @NotNull Map<String, String> with(@NotNull Map<String, String> data, @NotNull String key, @Nullable String value) {
+        Map<String, String> copy = new HashMap<>(data);
+        if (value == null) {
+            copy.remove(key);
+        } else {
+            copy.put(key, value);
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,133 @@
+package dev.emortal.api.liveconfigparser.watcher;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class FanOutWatcherTest {
+
+    private ConfigWatcherConsumer source;
+    private RecordingConsumer leaderConsumer;
+    private FanOutLeaderWatcher leader;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        this.leaderConsumer = new RecordingConsumer();
+        this.leader = new FanOutLeaderWatcher(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), consumer -> {
+            this.source = consumer;
+            return () -> {
+            };
+        }, this.leaderConsumer, 2);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        this.leader.close();
+    }
+
+    @Test
+    public void testUpdatesReachLeaderAndFollowers() throws Exception {
+        this.source.onConfigCreate("a.json", "a");
+
+        RecordingConsumer first = new RecordingConsumer();
+        RecordingConsumer second = new RecordingConsumer();
+        try (FanOutFollowerWatcher ignored = new FanOutFollowerWatcher(this.leader.address(), first);
+             FanOutFollowerWatcher ignored2 = new FanOutFollowerWatcher(this.leader.address(), second)) {
+            // The initial state is sent as a snapshot
+            assertEquals("create a.json a", first.next());
+            assertEquals("create a.json a", second.next());
+
+            this.source.onConfigModify("a.json", "b");
+            this.source.onConfigCreate("c.json", "c");
+            this.source.onConfigDelete("a.json");
+
+            for (RecordingConsumer consumer : new RecordingConsumer[]{this.leaderConsumer, first, second}) {
+                if (consumer == this.leaderConsumer) assertEquals("create a.json a", consumer.next());
+                assertEquals("modify a.json b", consumer.next());
+                assertEquals("create c.json c", consumer.next());
+                assertEquals("delete a.json", consumer.next());
+            }
+        }
+    }
+
+    @Test
+    public void testFollowerCatchesUpAfterDisconnect() throws Exception {
+        RecordingConsumer follower = new RecordingConsumer();
+        try (FanOutFollowerWatcher ignored = new FanOutFollowerWatcher(this.leader.address(), follower)) {
+            this.source.onConfigCreate("a.json", "a");
+            assertEquals("create a.json a", follower.next());
+
+            // Missed updates still in the log are replayed
+            this.leader.disconnectFollowers();
+            this.source.onConfigCreate("b.json", "b");
+            assertEquals("create b.json b", follower.next());
+
+            // Once more updates were missed than the log holds, a snapshot is sent instead
+            this.leader.disconnectFollowers();
+            this.source.onConfigDelete("a.json");
+            this.source.onConfigCreate("c.json", "c");
+            this.source.onConfigModify("b.json", "b2");
+            assertEquals(Set.of("delete a.json", "create c.json c", "modify b.json b2"),
+                    Set.of(follower.next(), follower.next(), follower.next()));
+            assertNull(follower.events.poll());
+        }
+    }
+
+    @Test
+    public void testFollowerRedeliversAfterConsumerFails() throws Exception {
+        RecordingConsumer follower = new RecordingConsumer();
+        ConfigWatcherConsumer failingOnce = new ConfigWatcherConsumer() {
+            private boolean failed;
+
+            @Override
+            public void onConfigCreate(@NotNull String fileName, @NotNull String fileContents) {
+                if (!this.failed) {
+                    this.failed = true;
+                    throw new IllegalStateException("Scripted consumer failure");
+                }
+                follower.onConfigCreate(fileName, fileContents);
+            }
+
+            @Override
+            public void onConfigModify(@NotNull String fileName, @NotNull String fileContents) {
+                follower.onConfigModify(fileName, fileContents);
+            }
+
+            @Override
+            public void onConfigDelete(@NotNull String fileName) {
+                follower.onConfigDelete(fileName);
+            }
+        };
+
+        try (FanOutFollowerWatcher ignored = new FanOutFollowerWatcher(this.leader.address(), failingOnce)) {
+            // The follower reconnects after the failure, and the file is delivered from the snapshot it gets
+            this.source.onConfigCreate("a.json", "a");
+            assertEquals("create a.json a", follower.next());
+
+            this.source.onConfigModify("a.json", "a2");
+            assertEquals("modify a.json a2", follower.next());
+            assertNull(follower.events.poll());
+        }
+    }
+
+    @Test
+    public void testInvalidStringLengthsAreRejected() {
+        for (int length : new int[]{-1, FanOutProtocol.MAX_STRING_BYTES + 1}) {
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(ByteBuffer.allocate(4).putInt(length).array()));
+            assertThrows(IOException.class, () -> FanOutProtocol.readString(input));
+        }
+    }
+}
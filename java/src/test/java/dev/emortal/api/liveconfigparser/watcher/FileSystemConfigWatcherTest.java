@@ -0,0 +1,110 @@
+package dev.emortal.api.liveconfigparser.watcher;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class FileSystemConfigWatcherTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testNestedConfigsAreLoaded() throws IOException {
+        Path root = Files.createDirectories(this.tempDir.resolve("root"));
+        Files.writeString(root.resolve("a.json"), "a");
+        Files.createDirectories(root.resolve("nested/deeper"));
+        Files.writeString(root.resolve("nested/deeper/b.json"), "b");
+        // Kubernetes ConfigMap volumes keep their real files in hidden folders, which must not be loaded twice
+        Files.createDirectories(root.resolve("..data"));
+        Files.writeString(root.resolve("..data/a.json"), "a");
+
+        RecordingConsumer consumer = new RecordingConsumer();
+        try (FileSystemConfigWatcher ignored = new FileSystemConfigWatcher(List.of(root), true, consumer)) {
+            assertEquals(Set.of("create a.json a", "create nested/deeper/b.json b"),
+                    Set.of(consumer.events.poll(), consumer.events.poll()));
+            assertNull(consumer.events.poll());
+        }
+    }
+
+    @Test
+    public void testNewSubdirectoriesAreWatched() throws Exception {
+        Path root = Files.createDirectories(this.tempDir.resolve("root"));
+
+        RecordingConsumer consumer = new RecordingConsumer();
+        try (FileSystemConfigWatcher ignored = new FileSystemConfigWatcher(List.of(root), true, consumer)) {
+            Path nested = Files.createDirectories(root.resolve("nested"));
+            this.write(nested.resolve("a.json"), "a");
+            assertEquals("create nested/a.json a", consumer.next());
+
+            this.write(nested.resolve("a.json"), "b");
+            assertEquals("modify nested/a.json b", consumer.next());
+
+            Files.delete(nested.resolve("a.json"));
+            assertEquals("delete nested/a.json", consumer.next());
+        }
+    }
+
+    @Test
+    public void testMultipleRootsAndUnchangedContents() throws Exception {
+        Path first = Files.createDirectories(this.tempDir.resolve("first"));
+        Path second = Files.createDirectories(this.tempDir.resolve("second"));
+        Files.writeString(first.resolve("a.json"), "a");
+
+        RecordingConsumer consumer = new RecordingConsumer();
+        try (FileSystemConfigWatcher ignored = new FileSystemConfigWatcher(List.of(first, second), false, consumer)) {
+            assertEquals("create a.json a", consumer.next());
+
+            // Rewriting the same contents is not an update
+            this.write(first.resolve("a.json"), "a");
+            this.write(second.resolve("b.json"), "b");
+            assertEquals("create b.json b", consumer.next());
+        }
+    }
+
+    @Test
+    public void testSameDirectoryThroughDifferentPaths() throws Exception {
+        Path root = Files.createDirectories(this.tempDir.resolve("root"));
+        // Both paths reach the same directory, so the watchers share a watch key
+        Path link = Files.createSymbolicLink(this.tempDir.resolve("link"), root);
+
+        RecordingConsumer first = new RecordingConsumer();
+        RecordingConsumer second = new RecordingConsumer();
+        try (FileSystemConfigWatcher ignored = new FileSystemConfigWatcher(root, first);
+             FileSystemConfigWatcher ignored2 = new FileSystemConfigWatcher(link.resolve("../link/."), second)) {
+            this.write(root.resolve("a.json"), "a");
+            assertEquals("create a.json a", first.next());
+            assertEquals("create a.json a", second.next());
+        }
+    }
+
+    @Test
+    public void testOtherFileSystemsAreRejected() throws IOException {
+        try (FileSystem zip = FileSystems.newFileSystem(this.tempDir.resolve("configs.zip"), Map.of("create", "true"))) {
+            Path root = Files.createDirectories(zip.getPath("configs"));
+            assertThrows(IllegalArgumentException.class, () -> new FileSystemConfigWatcher(root, new RecordingConsumer()));
+        }
+    }
+
+    /**
+     * Writes the file atomically, as a plain write may be seen half-written by the watcher.
+     */
+    private void write(@NotNull Path path, @NotNull String contents) throws IOException {
+        Path temp = Files.writeString(Files.createTempFile(this.tempDir, "config", ".tmp"), contents);
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
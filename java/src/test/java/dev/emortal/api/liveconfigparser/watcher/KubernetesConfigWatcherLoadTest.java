@@ -0,0 +1,134 @@
+package dev.emortal.api.liveconfigparser.watcher;
+
+import io.kubernetes.client.openapi.ApiClient;
+import io.kubernetes.client.util.Config;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measures how quickly ConfigMap updates propagate through {@link KubernetesConfigWatcher}, and how much the watcher
+ * allocates per update, by driving a {@link FakeKubernetesApiServer} at a high update rate.
+ * <p>
+ * Run with {@code ./gradlew loadTest}. The results are printed rather than asserted, apart from every update arriving.
+ */
+@Tag("load")
+public final class KubernetesConfigWatcherLoadTest {
+    private static final String NAMESPACE = "emortalmc";
+    private static final String CONFIG_MAP_NAME = "gamemodes";
+
+    private static final int FILE_COUNT = Integer.getInteger("loadTest.files", 100);
+    private static final int UPDATE_COUNT = Integer.getInteger("loadTest.updates", 5_000);
+    private static final int UPDATES_PER_SECOND = Integer.getInteger("loadTest.rate", 1_000);
+
+    @Test
+    public void testUpdatePropagation() throws IOException, InterruptedException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        try (FakeKubernetesApiServer server = new FakeKubernetesApiServer()) {
+            Map<String, String> data = new HashMap<>();
+            for (int i = 0; i < FILE_COUNT; i++) {
+                data.put("config-" + i + ".json", "-1");
+            }
+            server.putConfigMap(NAMESPACE, CONFIG_MAP_NAME, data);
+
+            ApiClient client = Config.fromUrl(server.url());
+            client.setReadTimeout(0);
+
+            long[] sentAt = new long[UPDATE_COUNT];
+            long[] receivedAt = new long[UPDATE_COUNT];
+            CountDownLatch allReceived = new CountDownLatch(UPDATE_COUNT);
+            LatencyConsumer consumer = new LatencyConsumer(receivedAt, allReceived);
+
+            KubernetesConfigWatcher watcher = new KubernetesConfigWatcher(client, NAMESPACE, CONFIG_MAP_NAME, consumer);
+            try {
+                Map<Long, Long> allocatedBefore = allocatedBytes(threads);
+
+                long interval = TimeUnit.SECONDS.toNanos(1) / UPDATES_PER_SECOND;
+                long next = System.nanoTime();
+                for (int i = 0; i < UPDATE_COUNT; i++) {
+                    // Each update changes a single file, like a real edit to one game mode
+                    data.put("config-" + (i % FILE_COUNT) + ".json", String.valueOf(i));
+                    sentAt[i] = System.nanoTime();
+                    server.putConfigMap(NAMESPACE, CONFIG_MAP_NAME, data);
+
+                    next += interval;
+                    LockSupport.parkNanos(next - System.nanoTime());
+                }
+
+                boolean completed = allReceived.await(60, TimeUnit.SECONDS);
+                Map<Long, Long> allocatedAfter = allocatedBytes(threads);
+
+                long received = UPDATE_COUNT - allReceived.getCount();
+                assertTrue(completed, "Only received " + received + " of " + UPDATE_COUNT + " updates");
+
+                long[] latencies = new long[UPDATE_COUNT];
+                for (int i = 0; i < UPDATE_COUNT; i++) {
+                    latencies[i] = receivedAt[i] - sentAt[i];
+                }
+                Arrays.sort(latencies);
+
+                long allocated = 0;
+                for (Map.Entry<Long, Long> entry : allocatedAfter.entrySet()) {
+                    allocated += entry.getValue() - allocatedBefore.getOrDefault(entry.getKey(), 0L);
+                }
+
+                System.out.printf("%d updates of %d files at %d/s%n", UPDATE_COUNT, FILE_COUNT, UPDATES_PER_SECOND);
+                System.out.printf("Propagation latency: p50 %.2fms, p99 %.2fms, max %.2fms%n",
+                        millis(latencies[UPDATE_COUNT / 2]), millis(latencies[UPDATE_COUNT * 99 / 100]), millis(latencies[UPDATE_COUNT - 1]));
+                System.out.printf("Allocated by the client: %d bytes per update%n", allocated / UPDATE_COUNT);
+            } finally {
+                watcher.close();
+            }
+        }
+    }
+
+    /**
+     * @return the bytes allocated so far by each live thread, excluding the fake server and the test itself
+     */
+    private static @NotNull Map<Long, Long> allocatedBytes(@NotNull com.sun.management.ThreadMXBean threads) {
+        Map<Long, Long> allocated = new HashMap<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread == Thread.currentThread() || thread.getName().startsWith(FakeKubernetesApiServer.THREAD_NAME_PREFIX)) continue;
+
+            long bytes = threads.getThreadAllocatedBytes(thread.threadId());
+            if (bytes != -1) allocated.put(thread.threadId(), bytes);
+        }
+        return allocated;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private record LatencyConsumer(long[] receivedAt, @NotNull CountDownLatch allReceived) implements ConfigWatcherConsumer {
+
+        @Override
+        public void onConfigCreate(@NotNull String fileName, @NotNull String fileContents) {
+        }
+
+        @Override
+        public void onConfigModify(@NotNull String fileName, @NotNull String fileContents) {
+            int update = Integer.parseInt(fileContents);
+            if (this.receivedAt[update] != 0) return;
+
+            this.receivedAt[update] = System.nanoTime();
+            this.allReceived.countDown();
+        }
+
+        @Override
+        public void onConfigDelete(@NotNull String fileName) {
+        }
+    }
+}
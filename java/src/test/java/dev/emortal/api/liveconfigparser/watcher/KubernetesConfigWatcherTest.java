@@ -0,0 +1,157 @@
+package dev.emortal.api.liveconfigparser.watcher;
+
+import io.kubernetes.client.openapi.ApiClient;
+import io.kubernetes.client.util.Config;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class KubernetesConfigWatcherTest {
+    private static final String NAMESPACE = "emortalmc";
+    private static final String CONFIG_MAP_NAME = "gamemodes";
+
+    private FakeKubernetesApiServer server;
+    private ApiClient client;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        this.server = new FakeKubernetesApiServer();
+        this.client = Config.fromUrl(this.server.url());
+        this.client.setReadTimeout(0); // Watches are long-lived
+    }
+
+    @AfterEach
+    public void tearDown() {
+        this.server.close();
+    }
+
+    @Test
+    public void testCreateModifyDelete() throws InterruptedException {
+        Map<String, String> data = Map.of("a.json", "a", "b.json", "b");
+        this.server.putConfigMap(NAMESPACE, CONFIG_MAP_NAME, data);
+
+        RecordingConsumer consumer = new RecordingConsumer();
+        KubernetesConfigWatcher watcher = new KubernetesConfigWatcher(this.client, NAMESPACE, CONFIG_MAP_NAME, consumer);
+        try {
+            assertEquals(Set.of("create a.json a", "create b.json b"), Set.of(consumer.next(), consumer.next()));
+
+            data = FakeKubernetesApiServer.with(data, "a.json", "a2");
+            this.server.putConfigMap(NAMESPACE, CONFIG_MAP_NAME, data);
+            assertEquals("modify a.json a2", consumer.next());
+
+            this.server.putConfigMap(NAMESPACE, CONFIG_MAP_NAME, FakeKubernetesApiServer.with(data, "b.json", null));
+            assertEquals("delete b.json", consumer.next());
+        } finally {
+            watcher.close();
+        }
+    }
+
+    @Test
+    public void testRecoversFromNotFound() throws InterruptedException {
+        this.server.failRequests(HttpURLConnection.HTTP_NOT_FOUND, 2);
+        this.server.putConfigMap(NAMESPACE, CONFIG_MAP_NAME, Map.of("a.json", "a"));
+
+        RecordingConsumer consumer = new RecordingConsumer();
+        KubernetesConfigWatcher watcher = new KubernetesConfigWatcher(this.client, NAMESPACE, CONFIG_MAP_NAME, consumer);
+        try {
+            assertEquals("create a.json a", consumer.next());
+        } finally {
+            watcher.close();
+        }
+    }
+
+    @Test
+    public void testResumesAfterDisconnect() throws InterruptedException {
+        this.server.putConfigMap(NAMESPACE, CONFIG_MAP_NAME, Map.of("a.json", "a"));
+
+        RecordingConsumer consumer = new RecordingConsumer();
+        KubernetesConfigWatcher watcher = new KubernetesConfigWatcher(this.client, NAMESPACE, CONFIG_MAP_NAME, consumer);
+        try {
+            assertEquals("create a.json a", consumer.next());
+
+            this.server.disconnectWatches();
+            this.server.putConfigMap(NAMESPACE, CONFIG_MAP_NAME, Map.of("a.json", "a2"));
+            assertEquals("modify a.json a2", consumer.next());
+            assertTrue(this.server.watchRequests() >= 2, "Watch was not restarted");
+        } finally {
+            watcher.close();
+        }
+    }
+
+    @Test
+    public void testRelistsAfterGone() throws InterruptedException {
+        this.server.putConfigMap(NAMESPACE, CONFIG_MAP_NAME, Map.of("a.json", "a"));
+
+        RecordingConsumer consumer = new RecordingConsumer();
+        KubernetesConfigWatcher watcher = new KubernetesConfigWatcher(this.client, NAMESPACE, CONFIG_MAP_NAME, consumer);
+        try {
+            assertEquals("create a.json a", consumer.next());
+
+            this.server.expireHistory();
+            this.server.putConfigMap(NAMESPACE, CONFIG_MAP_NAME, Map.of("a.json", "a2"));
+            assertEquals("modify a.json a2", consumer.next());
+            assertTrue(this.server.listRequests() >= 2, "ConfigMap was not listed again after 410 Gone");
+        } finally {
+            watcher.close();
+        }
+    }
+
+    @Test
+    public void testResumesAfterWatchTimeout() throws InterruptedException {
+        this.server.limitWatchTimeout(Duration.ofMillis(500));
+        this.server.putConfigMap(NAMESPACE, CONFIG_MAP_NAME, Map.of("a.json", "a"));
+
+        RecordingConsumer consumer = new RecordingConsumer();
+        KubernetesConfigWatcher watcher = new KubernetesConfigWatcher(this.client, NAMESPACE, CONFIG_MAP_NAME, consumer);
+        try {
+            assertEquals("create a.json a", consumer.next());
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (this.server.watchRequests() < 3) {
+                assertTrue(System.nanoTime() < deadline, "Watch was not restarted after timing out");
+                Thread.sleep(50);
+            }
+
+            this.server.putConfigMap(NAMESPACE, CONFIG_MAP_NAME, Map.of("a.json", "a2"));
+            assertEquals("modify a.json a2", consumer.next());
+            assertNull(consumer.events.poll(1, TimeUnit.SECONDS));
+        } finally {
+            watcher.close();
+        }
+    }
+
+    @Test
+    public void testRelistsAfterResourceVersionExpires() throws InterruptedException {
+        this.server.limitHistory(1);
+        this.server.putConfigMap(NAMESPACE, CONFIG_MAP_NAME, Map.of("a.json", "a"));
+
+        RecordingConsumer consumer = new RecordingConsumer();
+        KubernetesConfigWatcher watcher = new KubernetesConfigWatcher(this.client, NAMESPACE, CONFIG_MAP_NAME, consumer);
+        try {
+            assertEquals("create a.json a", consumer.next());
+
+            // Two updates while disconnected push the watcher's resource version out of the one-event history
+            this.server.updateWhileDisconnected(() -> {
+                this.server.putConfigMap(NAMESPACE, CONFIG_MAP_NAME, Map.of("a.json", "a2", "b.json", "b"));
+                this.server.putConfigMap(NAMESPACE, CONFIG_MAP_NAME, Map.of("a.json", "a3", "b.json", "b"));
+            });
+
+            assertEquals(Set.of("modify a.json a3", "create b.json b"), Set.of(consumer.next(), consumer.next()));
+            assertNull(consumer.events.poll(1, TimeUnit.SECONDS), "Relist delivered configs again");
+            assertTrue(this.server.listRequests() >= 2, "ConfigMap was not listed again after 410 Gone");
+        } finally {
+            watcher.close();
+        }
+    }
+}
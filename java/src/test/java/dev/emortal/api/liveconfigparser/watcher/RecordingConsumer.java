@@ -0,0 +1,36 @@
+package dev.emortal.api.liveconfigparser.watcher;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records config events as strings such as {@code create a.json <contents>}, for watcher tests.
+ */
+final class RecordingConsumer implements ConfigWatcherConsumer {
+
+    final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+    @NotNull String next() throws InterruptedException {
+        String event = this.events.poll(10, TimeUnit.SECONDS);
+        if (event == null) throw new AssertionError("Timed out waiting for config event");
+        return event;
+    }
+
+    @Override
+    public void onConfigCreate(@NotNull String fileName, @NotNull String fileContents) {
+        this.events.add("create " + fileName + " " + fileContents);
+    }
+
+    @Override
+    public void onConfigModify(@NotNull String fileName, @NotNull String fileContents) {
+        this.events.add("modify " + fileName + " " + fileContents);
+    }
+
+    @Override
+    public void onConfigDelete(@NotNull String fileName) {
+        this.events.add("delete " + fileName);
+    }
+}
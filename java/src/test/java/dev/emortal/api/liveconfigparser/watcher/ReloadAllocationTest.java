@@ -0,0 +1,281 @@
+package dev.emortal.api.liveconfigparser.watcher;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.sun.management.ThreadMXBean;
+import dev.emortal.api.liveconfigparser.configs.gamemode.GameModeCollection;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the memory allocated by reloading configs against the budgets in {@code allocation-budgets.properties}, to
+ * catch reloads allocating more, as allocation right after a reload causes GC pauses in the game servers.
+ * <p>
+ * The test fixtures are copied under new ids until there are thousands of configs. Only bytes, which are counted
+ * exactly per thread, are checked against budgets. A JFR recording of allocation, GC and thread events is summarized
+ * and kept in {@code build/allocation} for finding the cause of a regression, but GC pauses depend too much on the
+ * machine to fail on. Run with {@code ./gradlew allocationTest}, which {@code check} doesn't include, as the budgets
+ * depend on the JDK. The properties file explains how to re-baseline them.
+ */
+@Tag("allocation")
+public final class ReloadAllocationTest {
+    private static final Path TEST_FILES_PATH = Path.of("../testfiles");
+    private static final Path RECORDING_PATH = Path.of("build", "allocation");
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final ThreadMXBean THREADS = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static final int WARMUP_ROUNDS = 200;
+    private static final int WARMUP_CONFIGS = 20;
+    private static final int MEASURED_ROUNDS = 100;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testColdStart() throws IOException {
+        Properties budgets = loadBudgets();
+        int configCount = Integer.parseInt(budgets.getProperty("configs"));
+        Path root = this.createConfigs("configs", configCount);
+
+        // Load a few configs first, so that class loading and initialization are counted the same whichever test
+        // runs first
+        try (GameModeCollection ignored = GameModeCollection.fromLocalPath(this.createConfigs("warmup", WARMUP_CONFIGS))) {
+            System.out.printf("Loaded %s configs to warm up%n", WARMUP_CONFIGS);
+        }
+
+        // The watcher thread of an earlier test may not have stopped yet
+        Set<Thread> oldWatcherThreads = watcherThreads();
+
+        long before = THREADS.getCurrentThreadAllocatedBytes();
+        try (GameModeCollection collection = GameModeCollection.fromLocalPath(root)) {
+            // The initial load happens on this thread, anything else the new watcher thread has done is counted too
+            long allocated = THREADS.getCurrentThreadAllocatedBytes() - before;
+            for (Thread thread : watcherThreads()) {
+                if (!oldWatcherThreads.contains(thread)) allocated += THREADS.getThreadAllocatedBytes(thread.threadId());
+            }
+            System.out.printf("Cold start of %s configs allocated %s bytes%n", collection.allConfigs().size(), allocated);
+
+            assertBudget(budgets, "coldStart.bytesPerConfig", allocated / configCount);
+        }
+    }
+
+    @Test
+    public void testSteadyStateUpdates() throws IOException, InterruptedException {
+        Properties budgets = loadBudgets();
+        Path root = this.createConfigs("configs", Integer.parseInt(budgets.getProperty("configs")));
+
+        Files.createDirectories(RECORDING_PATH);
+        Path recordingFile = RECORDING_PATH.resolve("steady-state.jfr");
+
+        try (GameModeCollection collection = GameModeCollection.fromLocalPath(root);
+             Recording recording = new Recording()) {
+            // Updates are handled on the watcher thread, so counting there between updates covers the whole reload
+            BlockingQueue<Long> allocatedAtUpdate = new ArrayBlockingQueue<>(1);
+            AtomicLong watcherThreadId = new AtomicLong();
+            collection.addGlobalUpdateListener(update -> {
+                watcherThreadId.set(Thread.currentThread().threadId());
+                allocatedAtUpdate.offer(THREADS.getCurrentThreadAllocatedBytes());
+            });
+
+            Path modified = root.resolve("parkourtag-0.json");
+            JsonObject modifiedConfig = GSON.fromJson(Files.readString(modified), JsonObject.class);
+            Path unchanged = root.resolve("lobby-0.json");
+            String unchangedContents = Files.readString(unchanged);
+
+            recording.enable("jdk.ObjectAllocationSample").with("throttle", "10000/s").withStackTrace();
+            recording.enable("jdk.GarbageCollection");
+            recording.enable("jdk.ThreadStart");
+            recording.start();
+
+            // A single field changes, which must be reparsed and passed to the listeners
+            long[] modify = this.measureRounds(allocatedAtUpdate, () -> {
+                modifiedConfig.addProperty("maxPlayers", modifiedConfig.get("maxPlayers").getAsInt() + 1);
+                this.write(modified, GSON.toJson(modifiedConfig));
+            });
+
+            // A file is rewritten without changes, which should be dropped early. As nothing is passed to the
+            // listeners, it is followed by a modify, and the cost of the modify is then subtracted.
+            long[] noOpAndModify = this.measureRounds(allocatedAtUpdate, () -> {
+                this.write(unchanged, unchangedContents);
+                modifiedConfig.addProperty("maxPlayers", modifiedConfig.get("maxPlayers").getAsInt() + 1);
+                this.write(modified, GSON.toJson(modifiedConfig));
+            });
+
+            recording.stop();
+            recording.dump(recordingFile);
+
+            long modifyBytes = median(modify);
+            long noOpBytes = Math.max(0, median(noOpAndModify) - modifyBytes);
+            System.out.printf("Single field modify allocated %s bytes, no-op update allocated %s bytes%n", modifyBytes, noOpBytes);
+
+            RecordingSummary summary = summarize(recordingFile, watcherThreadId.get());
+            System.out.println(summary);
+
+            assertBudget(budgets, "singleFieldModify.bytes", modifyBytes);
+            assertBudget(budgets, "noOpUpdate.bytes", noOpBytes);
+        }
+    }
+
+    /**
+     * @return the bytes allocated by the watcher thread in each measured round
+     */
+    private long[] measureRounds(@NotNull BlockingQueue<Long> allocatedAtUpdate, @NotNull Round round) throws IOException, InterruptedException {
+        long[] allocated = new long[MEASURED_ROUNDS];
+        long previous = -1;
+
+        for (int i = 0; i < WARMUP_ROUNDS + MEASURED_ROUNDS; i++) {
+            round.run();
+            Long current = allocatedAtUpdate.poll(10, TimeUnit.SECONDS);
+            assertNotNull(current, "Timed out waiting for update");
+
+            int measured = i - WARMUP_ROUNDS;
+            if (measured >= 0) allocated[measured] = current - previous;
+            previous = current;
+        }
+        return allocated;
+    }
+
+    private static @NotNull RecordingSummary summarize(@NotNull Path recordingFile, long watcherThreadId) throws IOException {
+        Map<String, Long> allocatedByClass = new HashMap<>();
+        int gcCount = 0;
+        Duration longestGcPause = Duration.ZERO;
+        int configThreadStarts = 0;
+
+        for (RecordedEvent event : RecordingFile.readAllEvents(recordingFile)) {
+            switch (event.getEventType().getName()) {
+                case "jdk.ObjectAllocationSample" -> {
+                    RecordedThread thread = event.getThread("eventThread");
+                    if (thread == null || thread.getJavaThreadId() != watcherThreadId) continue;
+
+                    String type = event.getClass("objectClass").getName();
+                    allocatedByClass.merge(type, event.getLong("weight"), Long::sum);
+                }
+                case "jdk.GarbageCollection" -> {
+                    gcCount++;
+                    Duration pause = event.getDuration("longestPause");
+                    if (pause.compareTo(longestGcPause) > 0) longestGcPause = pause;
+                }
+                case "jdk.ThreadStart" -> {
+                    RecordedThread thread = event.getThread("thread");
+                    if (thread != null && thread.getJavaName() != null && thread.getJavaName().startsWith("config-")) {
+                        configThreadStarts++;
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+
+        List<Map.Entry<String, Long>> topAllocations = new ArrayList<>(allocatedByClass.entrySet());
+        topAllocations.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()));
+        return new RecordingSummary(topAllocations.subList(0, Math.min(10, topAllocations.size())), gcCount,
+                longestGcPause, configThreadStarts);
+    }
+
+    private record RecordingSummary(@NotNull List<Map.Entry<String, Long>> topAllocations, int gcCount,
+                                    @NotNull Duration longestGcPause, int configThreadStarts) {
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder("Watcher thread allocations (sampled):\n");
+            for (Map.Entry<String, Long> entry : this.topAllocations) {
+                builder.append("  ").append(entry.getValue()).append(" bytes of ").append(entry.getKey()).append('\n');
+            }
+            builder.append("GCs: ").append(this.gcCount).append(", longest pause: ").append(this.longestGcPause.toMillis()).append("ms\n");
+            builder.append("Config threads started: ").append(this.configThreadStarts);
+            return builder.toString();
+        }
+    }
+
+    /**
+     * Copies each test fixture under new ids into a new directory until there are the given number of configs.
+     */
+    private @NotNull Path createConfigs(@NotNull String directory, int count) throws IOException {
+        List<JsonObject> fixtures = new ArrayList<>();
+        try (Stream<Path> files = Files.list(TEST_FILES_PATH)) {
+            for (Path file : files.filter(Files::isRegularFile).filter(path -> path.toString().endsWith(".json")).sorted().toList()) {
+                fixtures.add(GSON.fromJson(Files.readString(file), JsonObject.class));
+            }
+        }
+
+        Path root = Files.createDirectories(this.tempDir.resolve(directory));
+        for (int i = 0; i < count; i++) {
+            JsonObject config = fixtures.get(i % fixtures.size()).deepCopy();
+            String id = config.get("id").getAsString() + "-" + i / fixtures.size();
+            config.addProperty("id", id);
+            config.addProperty("fleetName", id);
+            Files.writeString(root.resolve(id + ".json"), GSON.toJson(config));
+        }
+        return root;
+    }
+
+    private void write(@NotNull Path path, @NotNull String contents) throws IOException {
+        Path temp = Files.writeString(Files.createTempFile(this.tempDir, "config", ".tmp"), contents);
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static @NotNull Set<Thread> watcherThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("config-file-watcher"))
+                .collect(Collectors.toSet());
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static @NotNull Properties loadBudgets() throws IOException {
+        Properties budgets = new Properties();
+        try (InputStream input = ReloadAllocationTest.class.getResourceAsStream("/allocation-budgets.properties")) {
+            assertNotNull(input, "Missing allocation-budgets.properties");
+            budgets.load(input);
+        }
+        return budgets;
+    }
+
+    private static void assertBudget(@NotNull Properties budgets, @NotNull String name, long actual) {
+        long budget = Long.parseLong(budgets.getProperty(name));
+        assertTrue(actual <= budget, () -> "%s is %s, over its budget of %s. If this is expected, raise the budget in allocation-budgets.properties"
+                .formatted(name, actual, budget));
+    }
+
+    @FunctionalInterface
+    private interface Round {
+
+        void run() throws IOException;
+    }
+}